@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.gfx.android.orma.core;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+public class DatabasePrograms {
+
+    private DatabasePrograms() {
+    }
+
+    /**
+     * Binds values to {@code program} with their own types, which is derived from
+     * {@code DatabaseUtils#bindObjectToProgram()}.
+     *
+     * @param program  A program to bind values to
+     * @param bindArgs Values to bind, or {@code null} to bind nothing
+     */
+    public static void bindAllArgs(@NonNull DatabaseProgram program, @Nullable Object[] bindArgs) {
+        if (bindArgs == null) {
+            return;
+        }
+        for (int i = 0; i < bindArgs.length; i++) {
+            Object value = bindArgs[i];
+            int index = i + 1;
+            if (value == null) {
+                program.bindNull(index);
+            } else if (value instanceof Double || value instanceof Float) {
+                program.bindDouble(index, ((Number) value).doubleValue());
+            } else if (value instanceof Number) {
+                program.bindLong(index, ((Number) value).longValue());
+            } else if (value instanceof Boolean) {
+                program.bindLong(index, (Boolean) value ? 1 : 0);
+            } else if (value instanceof byte[]) {
+                program.bindBlob(index, (byte[]) value);
+            } else {
+                program.bindString(index, value.toString());
+            }
+        }
+    }
+}
@@ -16,23 +16,17 @@
 
 package com.github.gfx.android.orma.core;
 
-public interface DatabaseStatement {
+public interface DatabaseStatement extends DatabaseProgram {
 
     void bindAllArgsAsStrings(String[] bindArgs);
 
+    void clearBindings();
+
     int executeUpdateDelete();
 
     void close();
 
     long executeInsert();
 
-    void bindNull(int index);
-
-    void bindLong(int index, long value);
-
-    void bindDouble(int index, double value);
-
-    void bindString(int index, String value);
-
-    void bindBlob(int index, byte[] value);
+    long simpleQueryForLong();
 }
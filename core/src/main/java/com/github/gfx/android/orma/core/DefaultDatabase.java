@@ -21,11 +21,15 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteProgram;
+import android.database.sqlite.SQLiteQuery;
 import android.os.Build;
 import androidx.annotation.NonNull;
 
-public class DefaultDatabase implements Database {
+public class DefaultDatabase implements TypedArgsDatabase {
 
     private final SQLiteDatabase database;
 
@@ -48,6 +52,22 @@ public class DefaultDatabase implements Database {
         return database.rawQuery(sql, selectionArgs);
     }
 
+    @Override
+    public Cursor rawQuery(String sql, final Object[] bindArgs) {
+        if (bindArgs == null || bindArgs.length == 0) {
+            return database.rawQuery(sql, null);
+        }
+        // SQLiteDatabase#rawQuery() only accepts String arguments, so bind them to the query in the factory
+        return database.rawQueryWithFactory(new SQLiteDatabase.CursorFactory() {
+            @Override
+            public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver masterQuery, String editTable,
+                    SQLiteQuery query) {
+                DatabasePrograms.bindAllArgs(new QueryProgram(query), bindArgs);
+                return new SQLiteCursor(masterQuery, editTable, query);
+            }
+        }, sql, null, null);
+    }
+
     @Override
     public DatabaseStatement compileStatement(String sql) {
         return new DefaultDatabaseStatement(database.compileStatement(sql));
@@ -141,7 +161,41 @@ public class DefaultDatabase implements Database {
         database.close();
     }
 
-    public static class Provider implements DatabaseProvider {
+    private static class QueryProgram implements DatabaseProgram {
+
+        private final SQLiteProgram program;
+
+        QueryProgram(SQLiteProgram program) {
+            this.program = program;
+        }
+
+        @Override
+        public void bindNull(int index) {
+            program.bindNull(index);
+        }
+
+        @Override
+        public void bindLong(int index, long value) {
+            program.bindLong(index, value);
+        }
+
+        @Override
+        public void bindDouble(int index, double value) {
+            program.bindDouble(index, value);
+        }
+
+        @Override
+        public void bindString(int index, String value) {
+            program.bindString(index, value);
+        }
+
+        @Override
+        public void bindBlob(int index, byte[] value) {
+            program.bindBlob(index, value);
+        }
+    }
+
+    public static class Provider implements ReadOnlyDatabaseProvider {
 
         @NonNull
         @Override
@@ -149,6 +203,13 @@ public class DefaultDatabase implements Database {
             return new DefaultDatabase(context.openOrCreateDatabase(name, mode, null, null));
         }
 
+        @NonNull
+        @Override
+        public Database provideOnDiskReadOnlyDatabase(@NonNull Context context, @NonNull String name) {
+            String path = context.getDatabasePath(name).getPath();
+            return new DefaultDatabase(SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY));
+        }
+
         @NonNull
         @Override
         public Database provideOnMemoryDatabase(@NonNull Context context) {
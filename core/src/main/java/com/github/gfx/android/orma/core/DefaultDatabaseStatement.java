@@ -31,6 +31,11 @@ class DefaultDatabaseStatement implements DatabaseStatement {
         statement.bindAllArgsAsStrings(bindArgs);
     }
 
+    @Override
+    public void clearBindings() {
+        statement.clearBindings();
+    }
+
     @Override
     public int executeUpdateDelete() {
         return statement.executeUpdateDelete();
@@ -46,6 +51,11 @@ class DefaultDatabaseStatement implements DatabaseStatement {
         return statement.executeInsert();
     }
 
+    @Override
+    public long simpleQueryForLong() {
+        return statement.simpleQueryForLong();
+    }
+
     @Override
     public void bindNull(int index) {
         statement.bindNull(index);
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.gfx.android.orma.core;
+
+import android.content.Context;
+import androidx.annotation.NonNull;
+
+/**
+ * An optional interface of {@link DatabaseProvider} which opens connections only for reading. Orma opens no readers
+ * for providers which do not implement it, and runs all the queries on the connection for writing.
+ */
+public interface ReadOnlyDatabaseProvider extends DatabaseProvider {
+
+    /**
+     * Opens an existing database file only for reading, e.g. {@code SQLiteDatabase.OPEN_READONLY}.
+     * The journal mode of the file, e.g. write-ahead logging, is the one set by the connection for writing.
+     */
+    @NonNull
+    Database provideOnDiskReadOnlyDatabase(@NonNull Context context, @NonNull String name);
+}
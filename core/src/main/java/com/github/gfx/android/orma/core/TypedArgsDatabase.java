@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma.core;
+
+import android.database.Cursor;
+
+/**
+ * An optional interface of {@link Database} which binds query arguments with their own types. Orma falls back to
+ * {@link Database#rawQuery(String, String[])} for databases which do not implement it.
+ */
+public interface TypedArgsDatabase extends Database {
+
+    /**
+     * Same as {@link #rawQuery(String, String[])}, but binds {@code Long}, {@code Double}, {@code String},
+     * {@code byte[]} or {@code null} values with their own types.
+     */
+    Cursor rawQuery(String sql, Object[] bindArgs);
+}
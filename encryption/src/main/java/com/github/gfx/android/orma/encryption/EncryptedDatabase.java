@@ -17,8 +17,9 @@
 package com.github.gfx.android.orma.encryption;
 
 import com.github.gfx.android.orma.core.Database;
-import com.github.gfx.android.orma.core.DatabaseProvider;
 import com.github.gfx.android.orma.core.DatabaseStatement;
+import com.github.gfx.android.orma.core.ReadOnlyDatabaseProvider;
+import com.github.gfx.android.orma.core.TypedArgsDatabase;
 
 import net.sqlcipher.DatabaseUtils;
 import net.sqlcipher.database.SQLiteDatabase;
@@ -31,7 +32,7 @@ import android.text.TextUtils;
 
 import java.io.File;
 
-public class EncryptedDatabase implements Database {
+public class EncryptedDatabase implements TypedArgsDatabase {
 
     private final SQLiteDatabase database;
 
@@ -54,6 +55,11 @@ public class EncryptedDatabase implements Database {
         return database.rawQuery(sql, selectionArgs);
     }
 
+    @Override
+    public Cursor rawQuery(String sql, Object[] bindArgs) {
+        return database.rawQuery(sql, bindArgs);
+    }
+
     @Override
     public DatabaseStatement compileStatement(String sql) {
         return new EncryptedDatabaseStatement(database.compileStatement(sql));
@@ -154,7 +160,7 @@ public class EncryptedDatabase implements Database {
         database.close();
     }
 
-    public static class Provider implements DatabaseProvider {
+    public static class Provider implements ReadOnlyDatabaseProvider {
 
         private final String password;
 
@@ -170,6 +176,15 @@ public class EncryptedDatabase implements Database {
             return new EncryptedDatabase(SQLiteDatabase.openOrCreateDatabase(path, password, null));
         }
 
+        @NonNull
+        @Override
+        public Database provideOnDiskReadOnlyDatabase(@NonNull Context context, @NonNull String name) {
+            SQLiteDatabase.loadLibs(context);
+            String path = context.getDatabasePath(name).getPath();
+            return new EncryptedDatabase(SQLiteDatabase.openDatabase(path, password, null,
+                    SQLiteDatabase.OPEN_READONLY));
+        }
+
         @NonNull
         @Override
         public Database provideOnMemoryDatabase(@NonNull Context context) {
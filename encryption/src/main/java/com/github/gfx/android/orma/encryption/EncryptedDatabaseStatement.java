@@ -38,6 +38,11 @@ class EncryptedDatabaseStatement implements DatabaseStatement {
         }
     }
 
+    @Override
+    public void clearBindings() {
+        statement.clearBindings();
+    }
+
     @Override
     public int executeUpdateDelete() {
         return statement.executeUpdateDelete();
@@ -53,6 +58,11 @@ class EncryptedDatabaseStatement implements DatabaseStatement {
         return statement.executeInsert();
     }
 
+    @Override
+    public long simpleQueryForLong() {
+        return statement.simpleQueryForLong();
+    }
+
     @Override
     public void bindNull(int index) {
         statement.bindNull(index);
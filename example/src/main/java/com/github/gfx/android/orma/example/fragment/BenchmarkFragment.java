@@ -69,6 +69,8 @@ public class BenchmarkFragment extends Fragment {
 
     static final int N_OPS = 100;
 
+    static final int N_THREADS = Runtime.getRuntime().availableProcessors();
+
     static final String PASSWORD = "password";
 
     final String titlePrefix = "title ";
@@ -157,6 +159,7 @@ public class BenchmarkFragment extends Fragment {
             orma = builder
                     .readOnMainThread(AccessThreadConstraint.NONE)
                     .writeOnMainThread(AccessThreadConstraint.NONE)
+                    .readerConnections(N_THREADS)
                     .trace(false)
                     .build();
             orma.migrate();
@@ -206,6 +209,10 @@ public class BenchmarkFragment extends Fragment {
                     adapter.add(result);
                     return startSelectAllWithOrma();
                 })
+                .flatMap(result -> {
+                    adapter.add(result);
+                    return startParallelSelectAllWithOrma();
+                })
                 .flatMap(result -> {
                     adapter.add(result);
                     return startSelectAllWithRealm(); // Realm objects can only be accessed on the thread they were created.
@@ -214,6 +221,10 @@ public class BenchmarkFragment extends Fragment {
                     adapter.add(result);
                     return startSelectAllWithHandWritten();
                 })
+                .flatMap(result -> {
+                    adapter.add(result);
+                    return startInsertAllWithOrma(); // runs last not to change the number of rows to select
+                })
                 .subscribe(
                         result -> {
                             adapter.add(result);
@@ -232,15 +243,18 @@ public class BenchmarkFragment extends Fragment {
                     long now = System.currentTimeMillis();
 
                     Inserter<Todo> statement = orma.prepareInsertIntoTodo();
-
-                    for (int i = 0; i < N_ITEMS; i++) {
-                        Todo todo = new Todo();
-
-                        todo.title = titlePrefix + i;
-                        todo.content = contentPrefix + i;
-                        todo.createdTime = new Date(now);
-
-                        statement.execute(todo);
+                    try {
+                        for (int i = 0; i < N_ITEMS; i++) {
+                            Todo todo = new Todo();
+
+                            todo.title = titlePrefix + i;
+                            todo.content = contentPrefix + i;
+                            todo.createdTime = new Date(now);
+
+                            statement.execute(todo);
+                        }
+                    } finally {
+                        statement.close();
                     }
                 });
             });
@@ -250,6 +264,36 @@ public class BenchmarkFragment extends Fragment {
                 .observeOn(AndroidSchedulers.mainThread());
     }
 
+    Single<Result> startInsertAllWithOrma() {
+        return Single.fromCallable(() -> {
+            long result = runWithBenchmark(() -> {
+                long now = System.currentTimeMillis();
+
+                List<Todo> todos = new ArrayList<>(N_ITEMS);
+                for (int i = 0; i < N_ITEMS; i++) {
+                    Todo todo = new Todo();
+
+                    todo.title = titlePrefix + i;
+                    todo.content = contentPrefix + i;
+                    todo.createdTime = new Date(now);
+
+                    todos.add(todo);
+                }
+
+                // without explicit transactions
+                Inserter<Todo> inserter = orma.prepareInsertIntoTodo();
+                try {
+                    inserter.executeAll(todos);
+                } finally {
+                    inserter.close();
+                }
+            });
+            return new Result("Orma/insertAll", result);
+        })
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread());
+    }
+
     Single<Result> startInsertWithRealm() {
         return Single.fromCallable(() -> {
             long result = runWithBenchmark(() -> {
@@ -314,33 +358,59 @@ public class BenchmarkFragment extends Fragment {
 
     Single<Result> startSelectAllWithOrma() {
         return Single.fromCallable(() -> {
-            long result = runWithBenchmark(() -> {
-                final AtomicInteger count = new AtomicInteger();
-
-                Todo_Selector todos = orma.selectFromTodo().orderByCreatedTimeAsc();
+            long result = runWithBenchmark(this::selectAllWithOrma);
+            return new Result("Orma/forEachAll", result);
+        })
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread());
+    }
 
-                for (Todo todo : todos) {
-                    @SuppressWarnings("unused")
-                    String title = todo.title;
-                    @SuppressWarnings("unused")
-                    String content = todo.content;
-                    @SuppressWarnings("unused")
-                    Date createdTime = todo.createdTime;
+    // each thread runs as many queries as startSelectAllWithOrma(), so the elapsed time stays
+    // the same as the single-threaded one if reads scale with the number of cores
+    Single<Result> startParallelSelectAllWithOrma() {
+        return Single.fromCallable(() -> {
+            long t0 = System.nanoTime();
 
-                    count.incrementAndGet();
-                }
+            List<Thread> threads = new ArrayList<>(N_THREADS);
+            for (int i = 0; i < N_THREADS; i++) {
+                threads.add(new Thread(() -> runWithBenchmark(this::selectAllWithOrma)));
+            }
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
 
-                if (todos.count() != count.get()) {
-                    throw new AssertionError("unexpected get: " + count.get());
-                }
-                Log.d(TAG, "Orma/forEachAll count: " + count);
-            });
-            return new Result("Orma/forEachAll", result);
+            long result = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0);
+            return new Result("Orma/forEachAll x" + N_THREADS, result);
         })
                 .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread());
     }
 
+    void selectAllWithOrma() {
+        final AtomicInteger count = new AtomicInteger();
+
+        Todo_Selector todos = orma.selectFromTodo().orderByCreatedTimeAsc();
+
+        for (Todo todo : todos) {
+            @SuppressWarnings("unused")
+            String title = todo.title;
+            @SuppressWarnings("unused")
+            String content = todo.content;
+            @SuppressWarnings("unused")
+            Date createdTime = todo.createdTime;
+
+            count.incrementAndGet();
+        }
+
+        if (todos.count() != count.get()) {
+            throw new AssertionError("unexpected get: " + count.get());
+        }
+        Log.d(TAG, "Orma/forEachAll count: " + count);
+    }
+
     Single<Result> startSelectAllWithRealm() {
         return Single.fromCallable(() -> {
             long result = runWithBenchmark(() -> {
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.collection.LongSparseArray;
+import androidx.collection.SimpleArrayMap;
+
+import java.lang.ref.WeakReference;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A first-level cache of models keyed by their {@code INTEGER} primary keys, which is enabled by
+ * {@code OrmaDatabase.Builder#identityMap(true)}.
+ *
+ * <p>Models are weakly referenced, so a model is kept only while the application uses it, e.g. while it is held by
+ * a {@link SingleAssociation} in a list. All the models of a table are dropped when the table or a table of its direct
+ * associations is modified, and again when the transaction that modified it ends.</p>
+ */
+public class IdentityMap {
+
+    static final int MIN_PRUNE_THRESHOLD = 64;
+
+    final SimpleArrayMap<String, Table> tables = new SimpleArrayMap<>();
+
+    // SQLite transactions are bound to threads, so are the tables modified in them
+    final ThreadLocal<PendingTables> pendingTables = new ThreadLocal<>();
+
+    long version;
+
+    long allTablesVersion;
+
+    int hitCount;
+
+    int missCount;
+
+    /**
+     * @return The version to give to {@link #put(Schema, long, Object, long)}, which must be taken before reading
+     * the model from the database
+     */
+    public synchronized long currentVersion() {
+        return version;
+    }
+
+    /**
+     * @param schema     The schema of the model
+     * @param primaryKey The primary key of the model
+     * @return The model for {@code primaryKey}, or {@code null} if it is not cached
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T get(@NonNull Schema<T> schema, long primaryKey) {
+        Table table = tables.get(schema.getTableName());
+        if (table != null) {
+            WeakReference<Object> ref = table.models.get(primaryKey);
+            Object model = ref != null ? ref.get() : null;
+            if (model != null) {
+                hitCount++;
+                return (T) model;
+            }
+        }
+        missCount++;
+        return null;
+    }
+
+    /**
+     * @param schema     The schema of the model
+     * @param primaryKey The primary key of the model
+     * @param model      The model read from the database
+     * @param version    The version taken by {@link #currentVersion()} before reading the model
+     */
+    public synchronized <T> void put(@NonNull Schema<T> schema, long primaryKey, @NonNull T model, long version) {
+        String tableName = schema.getTableName();
+        Table table = tables.get(tableName);
+        if (table == null) {
+            table = new Table();
+            tables.put(tableName, table);
+        }
+        if (allTablesVersion > version || table.version > version) {
+            // the table has been modified while reading the model
+            return;
+        }
+        table.models.put(primaryKey, new WeakReference<Object>(model));
+        if (table.models.size() >= table.pruneThreshold) {
+            table.prune();
+        }
+    }
+
+    /**
+     * Drops the models of {@code tableName}.
+     *
+     * @param tableName     The name of the modified table
+     * @param inTransaction {@code true} if the table is modified in a transaction
+     */
+    public synchronized void invalidate(@NonNull String tableName, boolean inTransaction) {
+        Table table = tables.get(tableName);
+        if (table == null) {
+            table = new Table();
+            tables.put(tableName, table);
+        }
+        table.models.clear();
+        table.version = ++version;
+        if (inTransaction) {
+            getPendingTables().tableNames.add(tableName);
+        }
+    }
+
+    /**
+     * Drops all the models, e.g. after running arbitrary SQL.
+     *
+     * @param inTransaction {@code true} if the database is modified in a transaction
+     */
+    public synchronized void invalidateAll(boolean inTransaction) {
+        clearModels();
+        allTablesVersion = ++version;
+        if (inTransaction) {
+            getPendingTables().allTables = true;
+        }
+    }
+
+    /**
+     * Drops the models of the tables modified in the last transaction of the current thread again. This must be
+     * called by the thread after the transaction is committed or rolled back.
+     */
+    public synchronized void invalidatePendingTables() {
+        PendingTables pending = pendingTables.get();
+        if (pending == null) {
+            return;
+        }
+        pendingTables.remove();
+        if (pending.allTables) {
+            invalidateAll(false);
+        }
+        for (String tableName : pending.tableNames) {
+            invalidate(tableName, false);
+        }
+    }
+
+    private PendingTables getPendingTables() {
+        PendingTables pending = pendingTables.get();
+        if (pending == null) {
+            pending = new PendingTables();
+            pendingTables.set(pending);
+        }
+        return pending;
+    }
+
+    /**
+     * Drops all the models.
+     */
+    public synchronized void clear() {
+        clearModels();
+    }
+
+    private void clearModels() {
+        for (int i = 0, size = tables.size(); i < size; i++) {
+            tables.valueAt(i).models.clear();
+        }
+    }
+
+    /**
+     * @return The number of models including the ones which have been garbage-collected
+     */
+    public synchronized int size() {
+        int size = 0;
+        for (int i = 0, n = tables.size(); i < n; i++) {
+            size += tables.valueAt(i).models.size();
+        }
+        return size;
+    }
+
+    public synchronized int hitCount() {
+        return hitCount;
+    }
+
+    public synchronized int missCount() {
+        return missCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        int accesses = hitCount + missCount;
+        int hitPercent = accesses != 0 ? (100 * hitCount / accesses) : 0;
+        return "IdentityMap[hits=" + hitCount + ",misses=" + missCount + ",hitRate=" + hitPercent + "%]";
+    }
+
+    static class PendingTables {
+
+        final Set<String> tableNames = new HashSet<>();
+
+        boolean allTables;
+    }
+
+    static class Table {
+
+        final LongSparseArray<WeakReference<Object>> models = new LongSparseArray<>();
+
+        long version;
+
+        int pruneThreshold = MIN_PRUNE_THRESHOLD;
+
+        // removes garbage-collected models
+        void prune() {
+            for (int i = models.size() - 1; i >= 0; i--) {
+                if (models.valueAt(i).get() == null) {
+                    models.removeAt(i);
+                }
+            }
+            pruneThreshold = Math.max(MIN_PRUNE_THRESHOLD, models.size() * 2);
+        }
+    }
+}
@@ -16,14 +16,17 @@
 package com.github.gfx.android.orma;
 
 import com.github.gfx.android.orma.annotation.OnConflict;
-import com.github.gfx.android.orma.core.Database;
 import com.github.gfx.android.orma.core.DatabaseStatement;
 import com.github.gfx.android.orma.event.DataSetChangedEvent;
 import com.github.gfx.android.orma.exception.InsertionFailureException;
+import com.github.gfx.android.orma.internal.SQLiteLimits;
 
 import androidx.annotation.NonNull;
 
 import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.Callable;
 
 /**
@@ -31,6 +34,13 @@ import java.util.concurrent.Callable;
  */
 public class Inserter<Model> implements Closeable {
 
+    /**
+     * The max number of rows in a {@code VALUES} clause, i.e. {@code SQLITE_MAX_COMPOUND_SELECT} in SQLite &lt; 3.8.8.
+     */
+    static final int MAX_VALUES_ROWS = 500;
+
+    static final String VALUES = " VALUES ";
+
     final OrmaConnection conn;
 
     final Schema<Model> schema;
@@ -41,13 +51,21 @@ public class Inserter<Model> implements Closeable {
 
     final String sql;
 
+    final int bindArgsPerRow;
+
+    /**
+     * The number of rows in a multi-row {@code INSERT} statement. {@code 1} if it is not available.
+     */
+    final int rowsPerBatch;
+
     public Inserter(OrmaConnection conn, Schema<Model> schema, @OnConflict int onConflictAlgorithm, boolean withoutAutoId) {
-        Database db = conn.getWritableDatabase();
         this.conn = conn;
         this.schema = schema;
         this.withoutAutoId = withoutAutoId;
         sql = schema.getInsertStatement(onConflictAlgorithm, withoutAutoId);
-        statement = db.compileStatement(sql);
+        statement = conn.acquireStatement(sql);
+        bindArgsPerRow = countBindArgsPerRow();
+        rowsPerBatch = calculateRowsPerBatch(onConflictAlgorithm);
     }
 
     public Inserter(OrmaConnection conn, Schema<Model> schema) {
@@ -62,13 +80,17 @@ public class Inserter<Model> implements Closeable {
      * @return The last inserted row id. {@code -1} for failure (e.g. constraint violations).
      */
     public long execute(@NonNull Model model) {
+        long rowId = executeWithoutTrigger(model);
+        conn.trigger(DataSetChangedEvent.Type.INSERT, schema, OrmaConnection.toRowIds(rowId));
+        return rowId;
+    }
+
+    long executeWithoutTrigger(@NonNull Model model) {
         if (conn.trace) {
             conn.trace(sql, schema.convertToArgs(conn, model, withoutAutoId));
         }
         schema.bindArgs(conn, statement, model, withoutAutoId);
-        long rowId = statement.executeInsert();
-        conn.trigger(DataSetChangedEvent.Type.INSERT, schema);
-        return rowId;
+        return statement.executeInsert();
     }
 
     /**
@@ -83,10 +105,159 @@ public class Inserter<Model> implements Closeable {
         }
     }
 
-    public void executeAll(@NonNull Iterable<Model> models) {
-        for (Model model : models) {
-            execute(model);
+    /**
+     * <p>Inserts {@code models} into a table. Models are inserted in chunks by multi-row {@code INSERT} statements
+     * if the row ids are assigned by SQLite and the {@link OnConflict} algorithm is none of {@code IGNORE} and {@code
+     * REPLACE}; otherwise models are inserted one by one.</p>
+     *
+     * <p>If no transaction is in progress, all the models are inserted in a transaction, and the data-set changed
+     * event is fired only once at the end of it.</p>
+     *
+     * @param models model objects to insert
+     * @return The inserted row ids in the same order as {@code models}
+     */
+    @NonNull
+    public long[] executeAll(@NonNull final Iterable<Model> models) {
+        if (conn.getWritableDatabase().inTransaction()) {
+            return executeAllWithoutTransaction(models);
+        }
+
+        final long[][] rowIdsRef = new long[1][];
+        conn.transactionSync(new Runnable() {
+            @Override
+            public void run() {
+                rowIdsRef[0] = executeAllWithoutTransaction(models);
+            }
+        });
+        return rowIdsRef[0];
+    }
+
+    @NonNull
+    long[] executeAllWithoutTransaction(@NonNull Iterable<Model> models) {
+        List<Model> list;
+        if (models instanceof List) {
+            list = (List<Model>) models;
+        } else {
+            list = new ArrayList<>();
+            for (Model model : models) {
+                list.add(model);
+            }
+        }
+
+        int size = list.size();
+        long[] rowIds = new long[size];
+        int pos = 0;
+        if (rowsPerBatch > 1) {
+            while ((size - pos) > 1) {
+                int rows = Math.min(size - pos, rowsPerBatch);
+                executeBatch(list, pos, rows, rowIds);
+                pos += rows;
+            }
+        }
+        for (; pos < size; pos++) {
+            rowIds[pos] = executeWithoutTrigger(list.get(pos));
+        }
+        if (size != 0) {
+            conn.trigger(DataSetChangedEvent.Type.INSERT, schema, getInsertedRowIds(rowIds));
+        }
+        return rowIds;
+    }
+
+    // excludes -1 for the rows which are not inserted
+    @NonNull
+    static long[] getInsertedRowIds(@NonNull long[] rowIds) {
+        long[] insertedRowIds = new long[rowIds.length];
+        int n = 0;
+        for (long rowId : rowIds) {
+            if (rowId != -1) {
+                insertedRowIds[n++] = rowId;
+            }
         }
+        return n != rowIds.length ? Arrays.copyOf(insertedRowIds, n) : insertedRowIds;
+    }
+
+    void executeBatch(@NonNull List<Model> models, int start, int rows, @NonNull long[] rowIds) {
+        int columns = bindArgsPerRow;
+        String batchSql = buildBatchInsertStatement(rows);
+        if (conn.trace) {
+            Object[] args = new Object[rows * columns];
+            for (int i = 0; i < rows; i++) {
+                Object[] row = schema.convertToArgs(conn, models.get(start + i), withoutAutoId);
+                System.arraycopy(row, 0, args, i * columns, row.length);
+            }
+            conn.trace(batchSql, args);
+        }
+
+        // the last chunk has an odd number of rows, which is not worth caching
+        boolean cacheable = rows == rowsPerBatch;
+        DatabaseStatement batch = cacheable ? conn.acquireStatement(batchSql)
+                : conn.getWritableDatabase().compileStatement(batchSql);
+        try {
+            for (int i = 0; i < rows; i++) {
+                schema.bindArgs(conn, batch, models.get(start + i), withoutAutoId, i * columns);
+            }
+            long lastRowId = batch.executeInsert();
+            // rows inserted by a statement have consecutive row ids, as long as they are assigned by SQLite
+            for (int i = 0; i < rows; i++) {
+                rowIds[start + i] = lastRowId != -1 ? lastRowId - (rows - 1 - i) : -1;
+            }
+        } finally {
+            if (cacheable) {
+                conn.releaseStatement(batchSql, batch);
+            } else {
+                batch.close();
+            }
+        }
+    }
+
+    int calculateRowsPerBatch(@OnConflict int onConflictAlgorithm) {
+        if (onConflictAlgorithm == OnConflict.IGNORE || onConflictAlgorithm == OnConflict.REPLACE) {
+            // row ids are not predictable if some rows are ignored or replaced
+            return 1;
+        }
+
+        ColumnDef<Model, ?> primaryKey = schema.getPrimaryKey();
+        boolean bindsPrimaryKey = schema.getColumns().contains(primaryKey)
+                && !(withoutAutoId && primaryKey.isAutoValue());
+        if (bindsPrimaryKey && "INTEGER".equals(primaryKey.storageType)) {
+            // the primary key is an alias of the row id which is given by the model
+            return 1;
+        }
+
+        if (bindArgsPerRow == 0) {
+            return 1;
+        }
+        return Math.min(SQLiteLimits.MAX_BIND_ARGS / bindArgsPerRow, MAX_VALUES_ROWS);
+    }
+
+    int countBindArgsPerRow() {
+        int count = 0;
+        for (int i = sql.lastIndexOf(VALUES), length = sql.length(); i < length; i++) {
+            if (sql.charAt(i) == '?') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param rows The number of rows
+     * @return A multi-row {@code INSERT} statement, e.g. {@code INSERT INTO foo (a, b) VALUES (?,?),(?,?)}
+     */
+    @NonNull
+    String buildBatchInsertStatement(int rows) {
+        int valuesStart = sql.lastIndexOf(VALUES) + VALUES.length();
+        String valuesRow = sql.substring(valuesStart);
+
+        StringBuilder s = new StringBuilder(valuesStart + (valuesRow.length() + 1) * rows);
+        s.append(sql, 0, valuesStart);
+        for (int i = 0; i < rows; i++) {
+            if (i != 0) {
+                s.append(',');
+            }
+            s.append(valuesRow);
+        }
+        return s.toString();
     }
 
     /**
@@ -103,8 +274,11 @@ public class Inserter<Model> implements Closeable {
         }
     }
 
+    /**
+     * Gives back the statement to the statement cache of the connection.
+     */
     @Override
     public void close() {
-        statement.close();
+        conn.releaseStatement(sql, statement);
     }
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma;
+
+import androidx.annotation.NonNull;
+import androidx.collection.LongSparseArray;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A model with its has-many children loaded by {@link Selector#include(ColumnDef)}, which is returned by
+ * {@link Selector#toListWithChildren()}.
+ *
+ * @param <Model> The type of the parent model
+ */
+public class ModelWithChildren<Model> {
+
+    @NonNull
+    public final Model model;
+
+    final long primaryKey;
+
+    final List<ColumnDef<?, ?>> foreignKeys;
+
+    final List<LongSparseArray<? extends List<?>>> childrenMaps;
+
+    ModelWithChildren(@NonNull Model model, long primaryKey, @NonNull List<ColumnDef<?, ?>> foreignKeys,
+            @NonNull List<LongSparseArray<? extends List<?>>> childrenMaps) {
+        this.model = model;
+        this.primaryKey = primaryKey;
+        this.foreignKeys = foreignKeys;
+        this.childrenMaps = childrenMaps;
+    }
+
+    /**
+     * @param foreignKey The foreign key given to {@link Selector#include(ColumnDef)}
+     * @param <Child>    The type of the child models
+     * @return The child models which refer to the model with {@code foreignKey}
+     */
+    @SuppressWarnings("unchecked")
+    @NonNull
+    public <Child> List<Child> getChildren(@NonNull ColumnDef<Child, ?> foreignKey) {
+        for (int i = 0; i < foreignKeys.size(); i++) {
+            if (isSameColumn(foreignKeys.get(i), foreignKey)) {
+                List<Child> children = (List<Child>) childrenMaps.get(i).get(primaryKey);
+                return children != null ? children : Collections.<Child>emptyList();
+            }
+        }
+        throw new IllegalArgumentException(foreignKey + " is not included");
+    }
+
+    // a schema with an alias has its own column instances
+    static boolean isSameColumn(ColumnDef<?, ?> a, ColumnDef<?, ?> b) {
+        return a == b || (a.name.equals(b.name) && a.schema.getTableName().equals(b.schema.getTableName()));
+    }
+
+    @Override
+    public String toString() {
+        return "ModelWithChildren{" +
+                "model=" + model + '}';
+    }
+}
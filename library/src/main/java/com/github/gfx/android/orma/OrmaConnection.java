@@ -17,12 +17,16 @@ package com.github.gfx.android.orma;
 
 import com.github.gfx.android.orma.annotation.OnConflict;
 import com.github.gfx.android.orma.core.Database;
+import com.github.gfx.android.orma.core.DatabasePrograms;
 import com.github.gfx.android.orma.core.DatabaseStatement;
+import com.github.gfx.android.orma.core.ReadOnlyDatabaseProvider;
+import com.github.gfx.android.orma.core.TypedArgsDatabase;
 import com.github.gfx.android.orma.event.DataSetChangedEvent;
 import com.github.gfx.android.orma.event.DataSetChangedTrigger;
 import com.github.gfx.android.orma.exception.DatabaseAccessOnMainThreadException;
 import com.github.gfx.android.orma.exception.InsertionFailureException;
 import com.github.gfx.android.orma.exception.NoValueException;
+import com.github.gfx.android.orma.internal.SQLiteLimits;
 import com.github.gfx.android.orma.migration.MigrationEngine;
 import com.github.gfx.android.orma.migration.sqliteparser.SQLiteParserUtils;
 
@@ -36,12 +40,21 @@ import android.os.Looper;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
+import androidx.collection.LongSparseArray;
 import android.text.TextUtils;
 import android.util.Log;
 
 import java.io.Closeable;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Low-level interface to Orma database connection.
@@ -50,6 +63,14 @@ public class OrmaConnection implements Closeable {
 
     static final String TAG = "Orma";
 
+    // the main thread never changes, so each thread has to ask Looper only once
+    static final ThreadLocal<Boolean> onMainThread = new ThreadLocal<Boolean>() {
+        @Override
+        protected Boolean initialValue() {
+            return Looper.getMainLooper().getThread() == Thread.currentThread();
+        }
+    };
+
     final String name;
 
     /**
@@ -75,7 +96,34 @@ public class OrmaConnection implements Closeable {
 
     final DataSetChangedTrigger trigger = new DataSetChangedTrigger.NoOp();
 
-    boolean migrationCompleted = false;
+    final StatementCache statementCache;
+
+    final QueryCache queryCache;
+
+    @Nullable
+    final IdentityMap identityMap;
+
+    // the tables whose models embed the models of the key table, including the key table itself
+    final Map<String, String[]> dependentTableNames;
+
+    @Nullable
+    final ReaderPool readerPool;
+
+    final int writeQueueBatchSize;
+
+    final long writeQueueLatencyMillis;
+
+    @Nullable
+    volatile WriteQueue writeQueue;
+
+    volatile boolean migrationCompleted = false;
+
+    final AtomicInteger migrationLockCount = new AtomicInteger();
+
+    // computed lazily by any thread; racing threads compute the same value
+    volatile Boolean nativeUpsertSupported;
+
+    volatile Boolean jsonSupported;
 
     public OrmaConnection(@NonNull OrmaDatabaseBuilderBase<?> builder, List<Schema<?>> schemas) {
         this.name = builder.name;
@@ -89,7 +137,15 @@ public class OrmaConnection implements Closeable {
         this.trace = builder.trace;
         this.readOnMainThread = builder.readOnMainThread;
         this.writeOnMainThread = builder.writeOnMainThread;
+        this.statementCache = new StatementCache(builder.statementCacheSize);
+        this.queryCache = new QueryCache(builder.queryCacheSize);
+        this.identityMap = builder.identityMap ? new IdentityMap() : null;
+        this.dependentTableNames = builder.identityMap ? buildDependentTableNames(schemas)
+                : Collections.<String, String[]>emptyMap();
         this.db = openDatabase(builder);
+        this.readerPool = openReaderPool(builder);
+        this.writeQueueBatchSize = builder.writeQueueBatchSize;
+        this.writeQueueLatencyMillis = builder.writeQueueLatencyMillis;
 
         checkSchemas(schemas);
     }
@@ -105,6 +161,22 @@ public class OrmaConnection implements Closeable {
         return db;
     }
 
+    @Nullable
+    private ReaderPool openReaderPool(OrmaDatabaseBuilderBase<?> builder) {
+        // without WAL, readers would block the writer
+        if (name == null || !wal || builder.readerConnections == 0
+                || !(builder.databaseProvider instanceof ReadOnlyDatabaseProvider)) {
+            return null;
+        }
+        ReadOnlyDatabaseProvider provider = (ReadOnlyDatabaseProvider) builder.databaseProvider;
+        // the writer has created the file and has set its journal mode to WAL
+        Database[] readers = new Database[builder.readerConnections];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = provider.provideOnDiskReadOnlyDatabase(builder.context, name);
+        }
+        return new ReaderPool(readers, builder.statementCacheSize);
+    }
+
     @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
     private int openFlags() {
         if (wal && isRunningOnJellyBean()) {
@@ -128,45 +200,298 @@ public class OrmaConnection implements Closeable {
         return schemas;
     }
 
-    public synchronized Database getWritableDatabase() {
-        if (writeOnMainThread != AccessThreadConstraint.NONE) {
-            if (Looper.getMainLooper().getThread() == Thread.currentThread()) {
-                if (writeOnMainThread == AccessThreadConstraint.FATAL) {
-                    throw new DatabaseAccessOnMainThreadException("Writing things must run in background");
-                } else {
-                    Log.w(TAG, "Writing things must run in background");
-                }
+    public Database getWritableDatabase() {
+        if (writeOnMainThread != AccessThreadConstraint.NONE && onMainThread.get()) {
+            if (writeOnMainThread == AccessThreadConstraint.FATAL) {
+                throw new DatabaseAccessOnMainThreadException("Writing things must run in background");
+            } else {
+                Log.w(TAG, "Writing things must run in background");
             }
         }
-        if (!migrationCompleted) {
-            onMigrate(db);
-            migrationCompleted = true;
+        ensureMigrated();
+        return db;
+    }
+
+    public Database getReadableDatabase() {
+        if (readOnMainThread != AccessThreadConstraint.NONE && onMainThread.get()) {
+            if (readOnMainThread == AccessThreadConstraint.FATAL) {
+                throw new DatabaseAccessOnMainThreadException("Reading things must run in background");
+            } else {
+                Log.w(TAG, "Reading things must run in background");
+            }
         }
+        ensureMigrated();
         return db;
     }
 
-    public synchronized Database getReadableDatabase() {
-        if (readOnMainThread != AccessThreadConstraint.NONE) {
-            if (Looper.getMainLooper().getThread() == Thread.currentThread()) {
-                if (readOnMainThread == AccessThreadConstraint.FATAL) {
-                    throw new DatabaseAccessOnMainThreadException("Reading things must run in background");
-                } else {
-                    Log.w(TAG, "Reading things must run in background");
+    // double-checked, so that accesses after the migration never contend on the monitor
+    private void ensureMigrated() {
+        if (!migrationCompleted) {
+            synchronized (this) {
+                migrationLockCount.incrementAndGet();
+                if (!migrationCompleted) {
+                    onMigrate(db);
+                    migrationCompleted = true;
                 }
             }
         }
-        if (!migrationCompleted) {
-            onMigrate(db);
-            migrationCompleted = true;
+    }
+
+    /**
+     * @return The number of times database accesses took the monitor of the connection to wait for the migration,
+     * which stays the same once the migration has completed
+     */
+    public int getMigrationLockCount() {
+        return migrationLockCount.get();
+    }
+
+    /**
+     * Checks out a reader for a query if the reader pool is enabled. Queries in a transaction run on the writer
+     * to see the changes in the transaction.
+     *
+     * @return A reader which must be given back by {@link ReaderPool#release(ReaderPool.Reader)}, or {@code null} to
+     * use {@link #getReadableDatabase()}
+     */
+    @Nullable
+    ReaderPool.Reader acquireReader() {
+        if (readerPool == null) {
+            return null;
         }
-        return db;
+        Database db = getReadableDatabase();
+        if (db.inTransaction()) {
+            return null;
+        }
+        return readerPool.acquire();
+    }
+
+    /**
+     * @return The queue of write tasks applied in groups by a writer thread, which is created on demand
+     * @see OrmaDatabaseBuilderBase#writeQueue(int, long, TimeUnit)
+     */
+    @NonNull
+    public WriteQueue writeQueue() {
+        WriteQueue queue = writeQueue;
+        if (queue == null) {
+            synchronized (this) {
+                queue = writeQueue;
+                if (queue == null) {
+                    queue = new WriteQueue(this, writeQueueBatchSize, writeQueueLatencyMillis, TimeUnit.MILLISECONDS);
+                    writeQueue = queue;
+                }
+            }
+        }
+        return queue;
+    }
+
+    /**
+     * @return The pool of readers, or {@code null} if it is disabled
+     */
+    @Nullable
+    public ReaderPool getReaderPool() {
+        return readerPool;
+    }
+
+    /**
+     * @return The cache of compiled statements, which is shared by all the statements in the connection.
+     */
+    @NonNull
+    public StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    /**
+     * @return The cache of query results for selectors with {@code cached()}
+     */
+    @NonNull
+    public QueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    /**
+     * @return The identity map, or {@code null} if it is disabled
+     */
+    @Nullable
+    public IdentityMap getIdentityMap() {
+        return identityMap;
+    }
+
+    /**
+     * Checks out a compiled statement from the statement cache.
+     * The statement must be given back by {@link #releaseStatement(String, DatabaseStatement)}.
+     *
+     * @param sql A SQL statement to compile
+     * @return A compiled statement which is owned by the caller until released
+     */
+    @NonNull
+    public DatabaseStatement acquireStatement(@NonNull String sql) {
+        return statementCache.acquire(getWritableDatabase(), sql);
+    }
+
+    /**
+     * Gives back a statement checked out by {@link #acquireStatement(String)} to the statement cache.
+     *
+     * @param sql       The SQL statement which {@code statement} is compiled from
+     * @param statement A compiled statement
+     */
+    public void releaseStatement(@NonNull String sql, @NonNull DatabaseStatement statement) {
+        statementCache.release(sql, statement);
     }
 
     public <T> long insert(Schema<T> schema, ContentValues contentValues, @OnConflict int onConflict) {
         if (trace) {
             traceInsert(schema, contentValues, onConflict);
         }
-        return getWritableDatabase().insertWithOnConflict(schema.getEscapedTableName(), null, contentValues, onConflict);
+        long rowId = getWritableDatabase().insertWithOnConflict(schema.getEscapedTableName(), null, contentValues,
+                onConflict);
+        trigger(DataSetChangedEvent.Type.INSERT, schema, toRowIds(rowId));
+        return rowId;
+    }
+
+    /**
+     * Executes a native UPSERT statement, {@code INSERT ... ON CONFLICT(primaryKey) DO UPDATE ...}, which is
+     * built by the annotation processor.
+     *
+     * An upsert fires one {@code INSERT} event whether it has inserted or updated the row, because the UPSERT
+     * statement does not tell which.
+     *
+     * @param schema   The schema of the model
+     * @param sql      An UPSERT statement
+     * @param bindArgs Values to bind to {@code sql}
+     * @return The row id of the inserted row, which is meaningless if an existing row is updated
+     * @see #isNativeUpsertSupported()
+     * @see #upsert(Schema, ContentValues)
+     */
+    public <T> long upsert(Schema<T> schema, @NonNull String sql, @NonNull Object[] bindArgs) {
+        if (trace) {
+            trace(sql, bindArgs);
+        }
+        DatabaseStatement statement = acquireStatement(sql);
+        long rowId;
+        try {
+            DatabasePrograms.bindAllArgs(statement, bindArgs);
+            rowId = statement.executeInsert();
+        } finally {
+            releaseStatement(sql, statement);
+        }
+        trigger(DataSetChangedEvent.Type.INSERT, schema, getUpsertedRowIds(schema, bindArgs, rowId));
+        return rowId;
+    }
+
+    /**
+     * The fallback of {@link #upsert(Schema, String, Object[])} for SQLite without UPSERT: updates the row which has
+     * the primary key in {@code contentValues}, or inserts {@code contentValues} if there is no such row.
+     * It fires one {@code INSERT} event as the native UPSERT does.
+     *
+     * @param schema        The schema of the model
+     * @param contentValues Values of the columns, which lacks the primary key to insert a row with a new row id
+     * @return The row id of the updated or inserted row
+     */
+    public <T> long upsert(Schema<T> schema, ContentValues contentValues) {
+        ColumnDef<T, ?> primaryKey = schema.getPrimaryKey();
+        Object key = contentValues.get(primaryKey.getEscapedName());
+        long rowId = -1;
+        if (key != null) {
+            Object[] keyArgs = {key};
+            if (executeUpdate(schema, contentValues, primaryKey.getEscapedName() + " = ?", keyArgs) != 0) {
+                rowId = hasIntegerPrimaryKey(schema) ? ((Number) key).longValue() : queryRowId(schema, keyArgs);
+            }
+        }
+        if (rowId == -1) {
+            if (trace) {
+                traceInsert(schema, contentValues, OnConflict.NONE);
+            }
+            rowId = getWritableDatabase().insertWithOnConflict(schema.getEscapedTableName(), null, contentValues,
+                    OnConflict.NONE);
+        }
+        trigger(DataSetChangedEvent.Type.INSERT, schema, hasIntegerPrimaryKey(schema) ? toRowIds(rowId) : null);
+        return rowId;
+    }
+
+    private long queryRowId(Schema<?> schema, Object[] keyArgs) {
+        // runs on the writer to see the row just updated even in a transaction
+        String sql = "SELECT `_rowid_` FROM " + schema.getEscapedTableName()
+                + " WHERE " + schema.getPrimaryKey().getEscapedName() + " = ?";
+        trace(sql, keyArgs);
+        DatabaseStatement statement = acquireStatement(sql);
+        try {
+            DatabasePrograms.bindAllArgs(statement, keyArgs);
+            return statement.simpleQueryForLong();
+        } finally {
+            releaseStatement(sql, statement);
+        }
+    }
+
+    @Nullable
+    static long[] getUpsertedRowIds(@NonNull Schema<?> schema, @NonNull Object[] bindArgs, long rowId) {
+        if (!hasIntegerPrimaryKey(schema)) {
+            return null;
+        }
+        // bindArgs are ordered as the columns, and the primary key is null if it is assigned by SQLite
+        Object primaryKey = bindArgs[schema.getColumns().indexOf(schema.getPrimaryKey())];
+        if (primaryKey instanceof Number) {
+            return new long[]{((Number) primaryKey).longValue()};
+        } else {
+            return toRowIds(rowId);
+        }
+    }
+
+    @NonNull
+    static long[] toRowIds(long rowId) {
+        return rowId != -1 ? new long[]{rowId} : new long[0];
+    }
+
+    /**
+     * @return {@code true} if the SQLite library supports UPSERT, which is available since SQLite 3.24.0.
+     */
+    public boolean isNativeUpsertSupported() {
+        Boolean supported = nativeUpsertSupported;
+        if (supported == null) {
+            supported = isSQLiteVersionAtLeast(getSQLiteVersion(), 3, 24);
+            nativeUpsertSupported = supported;
+        }
+        return supported;
+    }
+
+    /**
+     * @return {@code true} if the SQLite library has the JSON1 functions, e.g. {@code json_each()}, which are
+     * optional before SQLite 3.38.0.
+     */
+    public boolean isJsonSupported() {
+        Boolean supported = jsonSupported;
+        if (supported == null) {
+            // uses the database directly because conditions may be built on the main thread
+            try {
+                Cursor cursor = db.rawQuery("SELECT json_valid('[]')", null);
+                cursor.close();
+                supported = true;
+            } catch (RuntimeException e) {
+                // "no such function: json_valid", whose exception type depends on the SQLite library
+                supported = false;
+            }
+            jsonSupported = supported;
+        }
+        return supported;
+    }
+
+    @NonNull
+    String getSQLiteVersion() {
+        Cursor cursor = getReadableDatabase().rawQuery("SELECT sqlite_version()", null);
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : "";
+        } finally {
+            cursor.close();
+        }
+    }
+
+    static boolean isSQLiteVersionAtLeast(@NonNull String version, int major, int minor) {
+        String[] parts = version.split("\\.");
+        try {
+            int actualMajor = Integer.parseInt(parts[0]);
+            int actualMinor = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+            return actualMajor > major || (actualMajor == major && actualMinor >= minor);
+        } catch (NumberFormatException e) {
+            return false;
+        }
     }
 
     private <T> void traceInsert(Schema<T> schema, @NonNull ContentValues contentValues, @OnConflict int onConflict) {
@@ -231,35 +556,226 @@ public class OrmaConnection implements Closeable {
     }
 
     public <T> T findByRowId(Schema<T> schema, long rowId) {
+        // the rowid is the primary key only if it is an INTEGER PRIMARY KEY
+        boolean useIdentityMap = identityMap != null && hasIntegerPrimaryKey(schema);
+        long version = 0;
+        if (useIdentityMap) {
+            T model = identityMap.get(schema, rowId);
+            if (model != null) {
+                return model;
+            }
+            version = identityMap.currentVersion();
+        }
+
         String tableAlias = schema.getEscapedTableAlias();
 
         String whereClause = (tableAlias == null ? "" : tableAlias + ".") + "`_rowid_` = ?";
-        String[] whereArgs = {String.valueOf(rowId)};
+        Object[] whereArgs = {rowId};
 
         T createdModel = querySingle(schema, schema.getDefaultResultColumns(), whereClause, whereArgs, null, null, null, 0);
         if (createdModel == null) {
             throw new NoValueException("Can't retrieve the created model for rowId="
                     + rowId + " in " + schema.getModelClass().getCanonicalName());
         }
+        if (useIdentityMap) {
+            identityMap.put(schema, rowId, createdModel, version);
+        }
         return createdModel;
     }
 
-    public int update(Schema<?> schema, ContentValues values, String whereClause, String[] whereArgs) {
-        Database db = getWritableDatabase();
-        if (trace) {
-            traceUpdateQuery(schema, values, whereClause, whereArgs);
+    /**
+     * Finds models by their {@code INTEGER} primary keys with {@code IN (...)} queries, each of which binds up to
+     * 999 keys. Models in the identity map are taken without querying them.
+     *
+     * @param schema      The schema of the models
+     * @param primaryKeys Distinct primary keys
+     * @return Models keyed by their primary keys, which lacks the keys not found
+     */
+    @NonNull
+    public <T> LongSparseArray<T> findAllByPrimaryKeys(@NonNull Schema<T> schema, @NonNull long[] primaryKeys) {
+        ColumnDef<T, ?> primaryKey = schema.getPrimaryKey();
+        LongSparseArray<T> models = new LongSparseArray<>(primaryKeys.length);
+
+        List<Object> missingKeys = new ArrayList<>(primaryKeys.length);
+        for (long key : primaryKeys) {
+            T model = identityMap != null ? identityMap.get(schema, key) : null;
+            if (model != null) {
+                models.put(key, model);
+            } else {
+                missingKeys.add(key);
+            }
+        }
+
+        for (int start = 0, size = missingKeys.size(); start < size; start += SQLiteLimits.MAX_BIND_ARGS) {
+            List<Object> chunk = missingKeys.subList(start, Math.min(size, start + SQLiteLimits.MAX_BIND_ARGS));
+
+            StringBuilder whereClause = new StringBuilder(primaryKey.getQualifiedName()).append(" IN (");
+            for (int i = 0; i < chunk.size(); i++) {
+                whereClause.append(i == 0 ? "?" : ",?");
+            }
+            whereClause.append(')');
+
+            long version = identityMap != null ? identityMap.currentVersion() : 0;
+            Cursor cursor = query(schema, schema.getDefaultResultColumns(), whereClause.toString(), chunk.toArray(),
+                    null, null, null, null);
+            try {
+                while (cursor.moveToNext()) {
+                    T model = schema.newModelFromCursor(this, cursor, 0);
+                    long key = ((Number) primaryKey.getSerialized(model)).longValue();
+                    models.put(key, model);
+                    if (identityMap != null) {
+                        identityMap.put(schema, key, model, version);
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return models;
+    }
+
+    /**
+     * Finds models by their row ids with {@code IN (...)} queries, each of which binds up to 999 row ids.
+     * The row ids are the primary keys if the models have {@code INTEGER} primary keys.
+     *
+     * @param schema The schema of the models
+     * @param rowIds Distinct row ids
+     * @return Models keyed by their row ids, which lacks the row ids not found
+     */
+    @NonNull
+    public <T> LongSparseArray<T> findAllByRowIds(@NonNull Schema<T> schema, @NonNull long[] rowIds) {
+        if (hasIntegerPrimaryKey(schema)) {
+            return findAllByPrimaryKeys(schema, rowIds);
+        }
+
+        String tableAlias = schema.getEscapedTableAlias();
+        String rowIdColumn = (tableAlias == null ? "" : tableAlias + ".") + "`_rowid_`";
+        String[] defaultColumns = schema.getDefaultResultColumns();
+        String[] columns = Arrays.copyOf(defaultColumns, defaultColumns.length + 1);
+        columns[defaultColumns.length] = rowIdColumn;
+
+        LongSparseArray<T> models = new LongSparseArray<>(rowIds.length);
+        for (int start = 0; start < rowIds.length; start += SQLiteLimits.MAX_BIND_ARGS) {
+            int end = Math.min(rowIds.length, start + SQLiteLimits.MAX_BIND_ARGS);
+
+            StringBuilder whereClause = new StringBuilder(rowIdColumn).append(" IN (");
+            Object[] bindArgs = new Object[end - start];
+            for (int i = start; i < end; i++) {
+                whereClause.append(i == start ? "?" : ",?");
+                bindArgs[i - start] = rowIds[i];
+            }
+            whereClause.append(')');
+
+            Cursor cursor = query(schema, columns, whereClause.toString(), bindArgs, null, null, null, null);
+            try {
+                while (cursor.moveToNext()) {
+                    models.put(cursor.getLong(defaultColumns.length), schema.newModelFromCursor(this, cursor, 0));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return models;
+    }
+
+    /**
+     * Finds the child models which refer to parent models by {@code foreignKey}, with {@code IN (...)} queries
+     * each of which binds up to 999 keys.
+     *
+     * @param foreignKey  A column of the child model, which refers to the {@code INTEGER} primary key of the parent
+     * @param parentKeys  Distinct primary keys of the parent models
+     * @return Lists of the child models keyed by the primary keys of their parents
+     */
+    @NonNull
+    public <Child> LongSparseArray<List<Child>> findChildren(@NonNull ColumnDef<Child, ?> foreignKey,
+            @NonNull long[] parentKeys) {
+        Schema<Child> schema = foreignKey.schema;
+        LongSparseArray<List<Child>> childrenMap = new LongSparseArray<>(parentKeys.length);
+
+        for (int start = 0; start < parentKeys.length; start += SQLiteLimits.MAX_BIND_ARGS) {
+            int end = Math.min(parentKeys.length, start + SQLiteLimits.MAX_BIND_ARGS);
+
+            StringBuilder whereClause = new StringBuilder(foreignKey.getQualifiedName()).append(" IN (");
+            Object[] bindArgs = new Object[end - start];
+            for (int i = start; i < end; i++) {
+                whereClause.append(i == start ? "?" : ",?");
+                bindArgs[i - start] = parentKeys[i];
+            }
+            whereClause.append(')');
+
+            Cursor cursor = query(schema, schema.getDefaultResultColumns(), whereClause.toString(), bindArgs,
+                    null, null, null, null);
+            try {
+                while (cursor.moveToNext()) {
+                    Child child = schema.newModelFromCursor(this, cursor, 0);
+                    long parentKey = ((Number) foreignKey.getSerialized(child)).longValue();
+                    List<Child> children = childrenMap.get(parentKey);
+                    if (children == null) {
+                        children = new ArrayList<>();
+                        childrenMap.put(parentKey, children);
+                    }
+                    children.add(child);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return childrenMap;
+    }
+
+    /**
+     * Creates the model of a direct association from a cursor, or takes it from the identity map if any.
+     * This is called from {@code Schema#newModelFromCursor()}.
+     *
+     * @param schema   The schema of the associated model
+     * @param cursor   A cursor
+     * @param keyIndex The index of the foreign key, which is followed by the columns of the associated model
+     * @return The associated model
+     */
+    @NonNull
+    public <T> T newAssociatedModelFromCursor(@NonNull Schema<T> schema, @NonNull Cursor cursor, int keyIndex) {
+        if (identityMap == null || !hasIntegerPrimaryKey(schema)) {
+            return schema.newModelFromCursor(this, cursor, keyIndex + 1);
         }
-        int count = db.update(schema.getEscapedTableName(), values, whereClause, whereArgs);
-        trigger(DataSetChangedEvent.Type.UPDATE, schema);
+        long primaryKey = cursor.getLong(keyIndex);
+        T model = identityMap.get(schema, primaryKey);
+        if (model == null) {
+            long version = identityMap.currentVersion();
+            model = schema.newModelFromCursor(this, cursor, keyIndex + 1);
+            identityMap.put(schema, primaryKey, model, version);
+        }
+        return model;
+    }
+
+    static boolean hasIntegerPrimaryKey(Schema<?> schema) {
+        ColumnDef<?, ?> primaryKey = schema.getPrimaryKey();
+        return primaryKey != null && "INTEGER".equals(primaryKey.storageType);
+    }
+
+    public int update(Schema<?> schema, ContentValues values, String whereClause, Object[] whereArgs) {
+        return update(schema, values, whereClause, whereArgs, null);
+    }
+
+    /**
+     * @param rowIds The row ids which {@code whereClause} is limited to, or {@code null} if they are unknown
+     */
+    public int update(Schema<?> schema, ContentValues values, String whereClause, Object[] whereArgs,
+            @Nullable long[] rowIds) {
+        int count = executeUpdate(schema, values, whereClause, whereArgs);
+        trigger(DataSetChangedEvent.Type.UPDATE, schema, rowIds);
         return count;
     }
 
-    private void traceUpdateQuery(Schema<?> schema, ContentValues values, String whereClause, String[] whereArgs) {
-        // copied from SQLiteDatabase#updateWithOnConflict()
-        StringBuilder sql = new StringBuilder();
-        sql.append("UPDATE ");
-        sql.append(schema.getEscapedTableName());
-        sql.append(" SET ");
+    private int executeUpdate(Schema<?> schema, ContentValues values, String whereClause, Object[] whereArgs) {
+        if (values.size() == 0) {
+            throw new IllegalArgumentException("Empty values");
+        }
+
+        // derived from SQLiteDatabase#updateWithOnConflict()
+        StringBuilder s = new StringBuilder();
+        s.append("UPDATE ");
+        s.append(schema.getEscapedTableName());
+        s.append(" SET ");
 
         // move all bind args to one array
         int setValuesSize = values.size();
@@ -267,10 +783,10 @@ public class OrmaConnection implements Closeable {
         Object[] bindArgs = new Object[bindArgsSize];
         int i = 0;
         for (String colName : values.keySet()) {
-            sql.append((i > 0) ? "," : "");
-            sql.append(colName);
+            s.append((i > 0) ? "," : "");
+            s.append(colName);
             bindArgs[i++] = values.get(colName);
-            sql.append("=?");
+            s.append("=?");
         }
         if (whereArgs != null) {
             for (i = setValuesSize; i < bindArgsSize; i++) {
@@ -278,28 +794,207 @@ public class OrmaConnection implements Closeable {
             }
         }
         if (!TextUtils.isEmpty(whereClause)) {
-            sql.append(" WHERE ");
-            sql.append(whereClause);
+            s.append(" WHERE ");
+            s.append(whereClause);
         }
 
+        String sql = s.toString();
         trace(sql, bindArgs);
+        DatabaseStatement statement = acquireStatement(sql);
+        try {
+            DatabasePrograms.bindAllArgs(statement, bindArgs);
+            return statement.executeUpdateDelete();
+        } finally {
+            releaseStatement(sql, statement);
+        }
     }
 
     @NonNull
     public Cursor rawQuery(@NonNull String sql, String... bindArgs) {
         trace(sql, bindArgs);
-        Database db = getReadableDatabase();
-        return db.rawQuery(sql, bindArgs);
+        ReaderPool.Reader reader = acquireReader();
+        if (reader == null) {
+            return getReadableDatabase().rawQuery(sql, bindArgs);
+        }
+        Cursor cursor;
+        try {
+            cursor = reader.db.rawQuery(sql, bindArgs);
+        } catch (RuntimeException e) {
+            readerPool.release(reader);
+            throw e;
+        }
+        return new ReaderPool.ReaderCursor(cursor, readerPool, reader);
+    }
+
+    /**
+     * Same as {@link #rawQuery(String, String...)}, but binds values with their own types.
+     *
+     * @param sql      A {@code SELECT} statement
+     * @param bindArgs Values to bind to {@code sql}
+     * @return A cursor for the result
+     */
+    @NonNull
+    public Cursor rawQuery(@NonNull String sql, @Nullable Object[] bindArgs) {
+        trace(sql, bindArgs);
+        ReaderPool.Reader reader = acquireReader();
+        if (reader == null) {
+            return rawQuery(getReadableDatabase(), sql, bindArgs);
+        }
+        Cursor cursor;
+        try {
+            cursor = rawQuery(reader.db, sql, bindArgs);
+        } catch (RuntimeException e) {
+            readerPool.release(reader);
+            throw e;
+        }
+        return new ReaderPool.ReaderCursor(cursor, readerPool, reader);
+    }
+
+    static Cursor rawQuery(@NonNull Database db, @NonNull String sql, @Nullable Object[] bindArgs) {
+        if (db instanceof TypedArgsDatabase) {
+            return ((TypedArgsDatabase) db).rawQuery(sql, bindArgs);
+        }
+        // binds them as strings, which is what Orma did before typed arguments
+        String[] stringArgs = null;
+        if (bindArgs != null) {
+            stringArgs = new String[bindArgs.length];
+            for (int i = 0; i < bindArgs.length; i++) {
+                stringArgs[i] = bindArgs[i] != null ? bindArgs[i].toString() : null;
+            }
+        }
+        return db.rawQuery(sql, stringArgs);
     }
 
     public long rawQueryForLong(@NonNull String sql, String... bindArgs) {
         trace(sql, bindArgs);
-        Database db = getReadableDatabase();
-        return db.longForQuery(sql, bindArgs);
+        ReaderPool.Reader reader = acquireReader();
+        if (reader == null) {
+            return getReadableDatabase().longForQuery(sql, bindArgs);
+        }
+        try {
+            return reader.db.longForQuery(sql, bindArgs);
+        } finally {
+            readerPool.release(reader);
+        }
     }
 
+    /**
+     * Same as {@link #rawQueryForLong(String, String...)}, but binds values with their own types to a compiled
+     * statement, which is cached.
+     *
+     * @param sql      A {@code SELECT} statement that returns a single integer
+     * @param bindArgs Values to bind to {@code sql}
+     * @return The value of the first column in the first row
+     */
+    public long rawQueryForLong(@NonNull String sql, @Nullable Object[] bindArgs) {
+        trace(sql, bindArgs);
+        ReaderPool.Reader reader = acquireReader();
+        if (reader == null) {
+            DatabaseStatement statement = statementCache.acquire(getReadableDatabase(), sql);
+            try {
+                DatabasePrograms.bindAllArgs(statement, bindArgs);
+                return statement.simpleQueryForLong();
+            } finally {
+                releaseStatement(sql, statement);
+            }
+        }
+        try {
+            DatabaseStatement statement = reader.statementCache.acquire(reader.db, sql);
+            try {
+                DatabasePrograms.bindAllArgs(statement, bindArgs);
+                return statement.simpleQueryForLong();
+            } finally {
+                reader.statementCache.release(sql, statement);
+            }
+        } finally {
+            readerPool.release(reader);
+        }
+    }
+
+    /**
+     * Same as {@link #rawQuery(String, Object[])}, but returns a copy of the result from the query cache if any.
+     * The result is cached until {@code schema} or its associated schemas are modified.
+     *
+     * @param schema   The schema which {@code sql} reads
+     * @param sql      A {@code SELECT} statement
+     * @param bindArgs Values to bind to {@code sql}
+     * @return A cursor for the result
+     * @see QueryCache
+     */
     @NonNull
-    public Cursor query(Schema<?> schema, String[] columns, String whereClause, String[] bindArgs,
+    public Cursor cachedRawQuery(@NonNull Schema<?> schema, @NonNull String sql, @Nullable Object[] bindArgs) {
+        Object value = queryCache.get(sql, bindArgs);
+        if (value == null) {
+            long version = queryCache.currentVersion();
+            Cursor cursor = rawQuery(sql, bindArgs);
+            try {
+                value = new QueryCache.CursorSnapshot(cursor);
+            } finally {
+                cursor.close();
+            }
+            queryCache.put(sql, bindArgs, getTableNames(schema), version, value);
+        }
+        return ((QueryCache.CursorSnapshot) value).newCursor();
+    }
+
+    /**
+     * Same as {@link #rawQueryForLong(String, Object[])}, but returns the result from the query cache if any.
+     * The result is cached until {@code schema} or its associated schemas are modified.
+     *
+     * @param schema   The schema which {@code sql} reads
+     * @param sql      A {@code SELECT} statement that returns a single integer
+     * @param bindArgs Values to bind to {@code sql}
+     * @return The value of the first column in the first row
+     * @see QueryCache
+     */
+    public long cachedRawQueryForLong(@NonNull Schema<?> schema, @NonNull String sql, @Nullable Object[] bindArgs) {
+        Object value = queryCache.get(sql, bindArgs);
+        if (value == null) {
+            long version = queryCache.currentVersion();
+            value = rawQueryForLong(sql, bindArgs);
+            queryCache.put(sql, bindArgs, getTableNames(schema), version, value);
+        }
+        return (Long) value;
+    }
+
+    static Map<String, String[]> buildDependentTableNames(List<Schema<?>> schemas) {
+        Map<String, Set<String>> dependents = new HashMap<>();
+        for (Schema<?> schema : schemas) {
+            for (String tableName : getTableNames(schema)) {
+                Set<String> tableNames = dependents.get(tableName);
+                if (tableNames == null) {
+                    tableNames = new LinkedHashSet<>();
+                    dependents.put(tableName, tableNames);
+                }
+                tableNames.add(schema.getTableName());
+            }
+        }
+        Map<String, String[]> result = new HashMap<>();
+        for (Map.Entry<String, Set<String>> entry : dependents.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().toArray(new String[0]));
+        }
+        return result;
+    }
+
+    static String[] getTableNames(Schema<?> schema) {
+        Set<String> tableNames = new LinkedHashSet<>();
+        collectTableNames(schema, tableNames);
+        return tableNames.toArray(new String[0]);
+    }
+
+    private static void collectTableNames(Schema<?> schema, Set<String> tableNames) {
+        if (!tableNames.add(schema.getTableName())) {
+            return;
+        }
+        for (ColumnDef<?, ?> column : schema.getColumns()) {
+            if (column instanceof AssociationDef) {
+                collectTableNames(((AssociationDef<?, ?, ?>) column).associationSchema, tableNames);
+            }
+        }
+    }
+
+    @NonNull
+    public Cursor query(Schema<?> schema, String[] columns, String whereClause, Object[] bindArgs,
             String groupBy, String having, String orderBy, String limit) {
         String sql = SQLiteQueryBuilder.buildQueryString(
                 false, schema.getSelectFromTableClause(), columns, whereClause, groupBy, having, orderBy, limit);
@@ -307,7 +1002,7 @@ public class OrmaConnection implements Closeable {
     }
 
     @Nullable
-    public <T> T querySingle(Schema<T> schema, String[] columns, String whereClause, String[] whereArgs, String groupBy,
+    public <T> T querySingle(Schema<T> schema, String[] columns, String whereClause, Object[] whereArgs, String groupBy,
             String having, String orderBy, long offset) {
         Cursor cursor = query(schema, columns, whereClause, whereArgs, groupBy, having, orderBy, offset + ",1");
 
@@ -322,20 +1017,26 @@ public class OrmaConnection implements Closeable {
         }
     }
 
-    public int delete(@NonNull Schema<?> schema, @Nullable String whereClause, @Nullable String[] whereArgs) {
-        Database db = getWritableDatabase();
+    public int delete(@NonNull Schema<?> schema, @Nullable String whereClause, @Nullable Object[] whereArgs) {
+        return delete(schema, whereClause, whereArgs, null);
+    }
 
+    /**
+     * @param rowIds The row ids which {@code whereClause} is limited to, or {@code null} if they are unknown
+     */
+    public int delete(@NonNull Schema<?> schema, @Nullable String whereClause, @Nullable Object[] whereArgs,
+            @Nullable long[] rowIds) {
         String sql = "DELETE FROM " + schema.getEscapedTableName()
                 + (!TextUtils.isEmpty(whereClause) ? " WHERE " + whereClause : "");
         trace(sql, whereArgs);
-        DatabaseStatement statement = db.compileStatement(sql);
-        statement.bindAllArgsAsStrings(whereArgs);
+        DatabaseStatement statement = acquireStatement(sql);
         try {
+            DatabasePrograms.bindAllArgs(statement, whereArgs);
             int count = statement.executeUpdateDelete();
-            trigger(DataSetChangedEvent.Type.DELETE, schema);
+            trigger(DataSetChangedEvent.Type.DELETE, schema, rowIds);
             return count;
         } finally {
-            statement.close();
+            releaseStatement(sql, statement);
         }
     }
 
@@ -351,7 +1052,10 @@ public class OrmaConnection implements Closeable {
             db.endTransaction();
             trace("end transaction (non exclusive)", null);
 
-            getTrigger().fireForTransaction();
+            if (!db.inTransaction()) {
+                invalidateCachesForTransaction();
+                getTrigger().fireForTransaction();
+            }
         }
     }
 
@@ -367,7 +1071,10 @@ public class OrmaConnection implements Closeable {
             db.endTransaction();
             trace("end transaction", null);
 
-            getTrigger().fireForTransaction();
+            if (!db.inTransaction()) {
+                invalidateCachesForTransaction();
+                getTrigger().fireForTransaction();
+            }
         }
     }
 
@@ -386,13 +1093,51 @@ public class OrmaConnection implements Closeable {
     }
 
     public <Model> void trigger(DataSetChangedEvent.Type type, Schema<Model> schema) {
-        getTrigger().fire(db, type, schema);
+        trigger(type, schema, null);
     }
 
+    /**
+     * @param rowIds The row ids of the changed rows, or {@code null} if they are unknown
+     */
+    public <Model> void trigger(DataSetChangedEvent.Type type, Schema<Model> schema, @Nullable long[] rowIds) {
+        invalidateCaches(schema, db.inTransaction());
+        getTrigger().fire(db, type, schema, rowIds);
+    }
+
+    private void invalidateCaches(@NonNull Schema<?> schema, boolean inTransaction) {
+        queryCache.invalidate(schema.getTableName(), inTransaction);
+        if (identityMap != null) {
+            // models embed their direct associations, so they are stale once the associated tables are modified
+            String[] tableNames = dependentTableNames.get(schema.getTableName());
+            if (tableNames == null) {
+                tableNames = new String[]{schema.getTableName()};
+            }
+            for (String tableName : tableNames) {
+                identityMap.invalidate(tableName, inTransaction);
+            }
+        }
+    }
+
+    private void invalidateCachesForTransaction() {
+        queryCache.invalidatePendingTables();
+        if (identityMap != null) {
+            identityMap.invalidatePendingTables();
+        }
+    }
+
+    /**
+     * Executes an arbitrary SQL statement. It is compiled each time and never goes into the statement cache, which is
+     * kept for the statements built by Orma, e.g. inserters, updaters and deleters.
+     */
     public void execSQL(@NonNull String sql, @NonNull Object... bindArgs) {
         trace(sql, bindArgs);
         Database db = getWritableDatabase();
         db.execSQL(sql, bindArgs);
+        // the modified tables are unknown
+        queryCache.invalidateAll(db.inTransaction());
+        if (identityMap != null) {
+            identityMap.invalidateAll(db.inTransaction());
+        }
     }
 
     /**
@@ -403,6 +1148,17 @@ public class OrmaConnection implements Closeable {
      */
     @Override
     public void close() {
+        if (writeQueue != null) {
+            writeQueue.close();
+        }
+        statementCache.close();
+        queryCache.clear();
+        if (identityMap != null) {
+            identityMap.clear();
+        }
+        if (readerPool != null) {
+            readerPool.close();
+        }
         db.close();
     }
 
@@ -30,12 +30,22 @@ import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * This class represents Orma options, and it is the base class of {@code OrmaDatabase.Builder}.
  */
 @SuppressWarnings("unchecked")
 public abstract class OrmaDatabaseBuilderBase<T extends OrmaDatabaseBuilderBase<?>> {
 
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 25;
+
+    public static final int DEFAULT_QUERY_CACHE_SIZE = 32;
+
+    public static final int DEFAULT_WRITE_QUEUE_BATCH_SIZE = 64;
+
+    public static final long DEFAULT_WRITE_QUEUE_LATENCY_MILLIS = 10;
+
     @NonNull
     final Context context;
 
@@ -61,6 +71,20 @@ public abstract class OrmaDatabaseBuilderBase<T extends OrmaDatabaseBuilderBase<
 
     boolean tryParsingSql;
 
+    int statementCacheSize = DEFAULT_STATEMENT_CACHE_SIZE;
+
+    int queryCacheSize = DEFAULT_QUERY_CACHE_SIZE;
+
+    int readerConnections;
+
+    int writeQueueBatchSize = DEFAULT_WRITE_QUEUE_BATCH_SIZE;
+
+    long writeQueueLatencyMillis = DEFAULT_WRITE_QUEUE_LATENCY_MILLIS;
+
+    boolean identityMap;
+
+    long queryObservableWindowMillis;
+
     @Nullable
     OrmaMigration.Builder ormaMigrationBuilder = null;
 
@@ -224,6 +248,93 @@ public abstract class OrmaDatabaseBuilderBase<T extends OrmaDatabaseBuilderBase<
         return (T) this;
     }
 
+    /**
+     * Sets the max number of compiled statements cached in the connection. The default is
+     * {@value #DEFAULT_STATEMENT_CACHE_SIZE}, and {@code 0} disables the statement cache.
+     *
+     * @param statementCacheSize The max number of compiled statements to cache
+     * @return the receiver itself
+     * @see StatementCache
+     */
+    public T statementCacheSize(@IntRange(from = 0) int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+        return (T) this;
+    }
+
+    /**
+     * Sets the max number of query results cached for selectors with {@code cached()}. The default is
+     * {@value #DEFAULT_QUERY_CACHE_SIZE}, and {@code 0} disables the query cache.
+     *
+     * @param queryCacheSize The max number of query results to cache
+     * @return the receiver itself
+     * @see QueryCache
+     */
+    public T queryCacheSize(@IntRange(from = 0) int queryCacheSize) {
+        this.queryCacheSize = queryCacheSize;
+        return (T) this;
+    }
+
+    /**
+     * Sets the number of connections used only for reading, in addition to the connection for writing.
+     * Queries out of transactions run on the readers, so that they run in parallel in multiple threads.
+     * The default is {@code 0}, which runs all the queries on the writer. This is ignored without
+     * {@link #writeAheadLogging(boolean)}, for in-memory databases, or for database providers which do not implement
+     * {@link com.github.gfx.android.orma.core.ReadOnlyDatabaseProvider}.
+     *
+     * @param readerConnections The number of connections for reading, e.g. the number of CPU cores
+     * @return the receiver itself
+     * @see ReaderPool
+     */
+    public T readerConnections(@IntRange(from = 0) int readerConnections) {
+        this.readerConnections = readerConnections;
+        return (T) this;
+    }
+
+    /**
+     * Sets the bounds of the group commit by {@code OrmaConnection#writeQueue()}, which runs up to
+     * {@code maxBatchSize} tasks in a transaction, waiting for other tasks for up to {@code maxLatency} after a task
+     * is submitted. The defaults are {@code 64} tasks and {@code 10} milliseconds.
+     *
+     * @param maxBatchSize The max number of tasks in a transaction
+     * @param maxLatency   The max time for which a task waits for other tasks
+     * @param unit         The unit of {@code maxLatency}
+     * @return the receiver itself
+     * @see WriteQueue
+     */
+    public T writeQueue(@IntRange(from = 1) int maxBatchSize, @IntRange(from = 0) long maxLatency,
+            @NonNull TimeUnit unit) {
+        this.writeQueueBatchSize = maxBatchSize;
+        this.writeQueueLatencyMillis = unit.toMillis(maxLatency);
+        return (T) this;
+    }
+
+    /**
+     * If {@code true}, models with {@code INTEGER} primary keys which are loaded by {@link SingleAssociation} or
+     * direct associations are shared through an identity map. The default is {@code false}.
+     *
+     * @param identityMap {@code true} to enable the identity map
+     * @return the receiver itself
+     * @see IdentityMap
+     */
+    public T identityMap(boolean identityMap) {
+        this.identityMap = identityMap;
+        return (T) this;
+    }
+
+    /**
+     * Sets the time window of {@code createQueryObservable()}, which coalesces data-set changed events in the window
+     * so that each subscriber re-runs its query at most once per window. The default is {@code 0}, which emits an
+     * event for each write.
+     *
+     * @param window The length of the time window
+     * @param unit   The unit of {@code window}
+     * @return the receiver itself
+     */
+    public T queryObservableWindow(@IntRange(from = 0) long window, @NonNull TimeUnit unit) {
+        this.queryObservableWindowMillis = unit.toMillis(window);
+        return (T) this;
+    }
+
     public T migrationTraceListener(@NonNull TraceListener traceListener) {
         prepareOrmaMigrationBuilder().trace(traceListener);
         return (T) this;
@@ -252,6 +363,10 @@ public abstract class OrmaDatabaseBuilderBase<T extends OrmaDatabaseBuilderBase<
         return (T) this;
     }
 
+    public long getQueryObservableWindowMillis() {
+        return queryObservableWindowMillis;
+    }
+
     @NonNull
     protected abstract String getSchemaHash();
 
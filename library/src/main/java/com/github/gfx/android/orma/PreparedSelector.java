@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma;
+
+import com.github.gfx.android.orma.exception.NoValueException;
+import com.github.gfx.android.orma.internal.OrmaConditionBase;
+
+import android.database.Cursor;
+import androidx.annotation.CheckResult;
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * An immutable query built by {@link Selector#prepare()}, which runs the same SQL with different bind arguments.
+ *
+ * <p>The SQL is built only once, and the arguments given to each method replace the bind arguments of the original
+ * selector in the same order, converted to the values the condition helpers bind, e.g. a {@code Date} to its time
+ * in milliseconds. Because the SQL text never changes, the compiled program is reused by the statement
+ * cache of the connection for {@link #count(Object...)} and by the SQLite connection for the other queries.
+ * It is safe to share a prepared selector among threads.</p>
+ *
+ * @param <Model> The model class
+ */
+public class PreparedSelector<Model> {
+
+    final OrmaConnection conn;
+
+    final Schema<Model> schema;
+
+    final String sql;
+
+    final String singleSql;
+
+    final String countSql;
+
+    final int argumentCount;
+
+    PreparedSelector(@NonNull OrmaConnection conn, @NonNull Schema<Model> schema, @NonNull String sql,
+            @NonNull String singleSql, @NonNull String countSql, int argumentCount) {
+        this.conn = conn;
+        this.schema = schema;
+        this.sql = sql;
+        this.singleSql = singleSql;
+        this.countSql = countSql;
+        this.argumentCount = argumentCount;
+    }
+
+    @NonNull
+    public Schema<Model> getSchema() {
+        return schema;
+    }
+
+    /**
+     * @return The {@code SELECT} statement the prepared selector runs
+     */
+    @NonNull
+    public String getQuery() {
+        return sql;
+    }
+
+    /**
+     * @return The number of arguments each method requires
+     */
+    public int getArgumentCount() {
+        return argumentCount;
+    }
+
+    @CheckResult
+    @NonNull
+    public Cursor execute(@NonNull Object... args) {
+        return conn.rawQuery(sql, checkArgs(args));
+    }
+
+    @NonNull
+    public List<Model> toList(@NonNull Object... args) {
+        Cursor cursor = execute(args);
+        try {
+            List<Model> result = new ArrayList<>(cursor.getCount());
+            for (int pos = 0; cursor.moveToPosition(pos); pos++) {
+                result.add(schema.newModelFromCursor(conn, cursor, 0));
+            }
+            return result;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Nullable
+    public Model valueOrNull(@NonNull Object... args) {
+        Cursor cursor = conn.rawQuery(singleSql, checkArgs(args));
+        try {
+            if (cursor.moveToFirst()) {
+                return schema.newModelFromCursor(conn, cursor, 0);
+            } else {
+                return null;
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @NonNull
+    public Model value(@NonNull Object... args) throws NoValueException {
+        Model model = valueOrNull(args);
+        if (model == null) {
+            throw new NoValueException("Expected single get but nothing for " + schema.getTableName());
+        }
+        return model;
+    }
+
+    @IntRange(from = 0)
+    public int count(@NonNull Object... args) {
+        return (int) conn.rawQueryForLong(countSql, checkArgs(args));
+    }
+
+    public boolean isEmpty(@NonNull Object... args) {
+        return count(args) == 0;
+    }
+
+    @Nullable
+    Object[] checkArgs(@NonNull Object[] args) {
+        if (args.length != argumentCount) {
+            throw new IllegalArgumentException(
+                    "Expected " + argumentCount + " arguments but " + args.length + " for " + sql);
+        }
+        if (args.length == 0) {
+            return null;
+        }
+        Object[] bindArgs = new Object[args.length];
+        for (int i = 0; i < args.length; i++) {
+            bindArgs[i] = toBindArg(args[i]);
+        }
+        return bindArgs;
+    }
+
+    /**
+     * Converts an argument to the value a condition helper binds for it. Values of types with a user-defined type
+     * adapter must be serialized by the caller.
+     */
+    @Nullable
+    static Object toBindArg(@Nullable Object arg) {
+        if (arg instanceof Date && !(arg instanceof java.sql.Date || arg instanceof java.sql.Time
+                || arg instanceof java.sql.Timestamp)) {
+            return BuiltInSerializers.serializeDate((Date) arg);
+        } else if (arg instanceof ByteBuffer) {
+            return BuiltInSerializers.serializeByteBuffer((ByteBuffer) arg);
+        } else if (arg instanceof Enum) {
+            return ((Enum<?>) arg).name();
+        } else {
+            return OrmaConditionBase.toBindArg(arg);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PreparedSelector[" + sql + "]";
+    }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A bounded LRU cache of query results keyed by SQL text and bind arguments, used by {@link Selector#cached()}.
+ *
+ * <p>Each result remembers the tables it is read from. A write to a table, which is notified by
+ * {@link #invalidate(String, boolean)}, makes all the results read from the table stale. Writes in a transaction are
+ * notified again by {@link #invalidatePendingTables()} when the transaction ends, because other connections may
+ * read the old rows until it is committed. They are tracked per thread, as SQLite transactions are.</p>
+ */
+public class QueryCache {
+
+    final int maxSize;
+
+    final LinkedHashMap<Key, Entry> map = new LinkedHashMap<>(16, 0.75f, true);
+
+    final Map<String, Long> tableVersions = new HashMap<>();
+
+    // SQLite transactions are bound to threads, so are the tables modified in them
+    final ThreadLocal<PendingTables> pendingTables = new ThreadLocal<>();
+
+    long version;
+
+    long allTablesVersion;
+
+    int hitCount;
+
+    int missCount;
+
+    /**
+     * @param maxSize The max number of query results to keep. {@code 0} disables caching.
+     */
+    public QueryCache(@IntRange(from = 0) int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize < 0");
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return The version to give to {@link #put(String, Object[], String[], long, Object)}, which must be taken
+     * before running the query
+     */
+    public synchronized long currentVersion() {
+        return version;
+    }
+
+    /**
+     * @param sql      A SQL statement
+     * @param bindArgs Values bound to {@code sql}
+     * @return A cached result, or {@code null} if there is no result or the result is stale
+     */
+    @Nullable
+    public synchronized Object get(@NonNull String sql, @Nullable Object[] bindArgs) {
+        if (maxSize == 0) {
+            return null;
+        }
+        Key key = new Key(sql, bindArgs);
+        Entry entry = map.get(key);
+        if (entry != null && isFresh(entry)) {
+            hitCount++;
+            return entry.value;
+        }
+        if (entry != null) {
+            map.remove(key);
+        }
+        missCount++;
+        return null;
+    }
+
+    /**
+     * @param sql      A SQL statement
+     * @param bindArgs Values bound to {@code sql}
+     * @param tables   The names of tables which the result is read from
+     * @param version  The version taken by {@link #currentVersion()} before running the query
+     * @param value    The result of the query
+     */
+    public synchronized void put(@NonNull String sql, @Nullable Object[] bindArgs, @NonNull String[] tables,
+            long version, @NonNull Object value) {
+        if (maxSize == 0) {
+            return;
+        }
+        Entry entry = new Entry(tables, version, value);
+        if (!isFresh(entry)) {
+            // the tables have been modified while running the query
+            return;
+        }
+        map.put(new Key(sql, bindArgs), entry);
+        if (map.size() > maxSize) {
+            Iterator<Map.Entry<Key, Entry>> iterator = map.entrySet().iterator();
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Makes the results read from {@code tableName} stale.
+     *
+     * @param tableName     The name of the modified table
+     * @param inTransaction {@code true} if the table is modified in a transaction
+     */
+    public synchronized void invalidate(@NonNull String tableName, boolean inTransaction) {
+        tableVersions.put(tableName, ++version);
+        if (inTransaction) {
+            getPendingTables().tableNames.add(tableName);
+        }
+    }
+
+    /**
+     * Makes all the results stale, e.g. after running arbitrary SQL.
+     *
+     * @param inTransaction {@code true} if the database is modified in a transaction
+     */
+    public synchronized void invalidateAll(boolean inTransaction) {
+        allTablesVersion = ++version;
+        if (inTransaction) {
+            getPendingTables().allTables = true;
+        }
+    }
+
+    /**
+     * Makes the results read from the tables modified in the last transaction of the current thread stale again.
+     * This must be called by the thread after the transaction is committed or rolled back.
+     */
+    public synchronized void invalidatePendingTables() {
+        PendingTables pending = pendingTables.get();
+        if (pending == null) {
+            return;
+        }
+        pendingTables.remove();
+        if (pending.allTables) {
+            allTablesVersion = ++version;
+        }
+        if (!pending.tableNames.isEmpty()) {
+            long newVersion = ++version;
+            for (String tableName : pending.tableNames) {
+                tableVersions.put(tableName, newVersion);
+            }
+        }
+    }
+
+    private PendingTables getPendingTables() {
+        PendingTables pending = pendingTables.get();
+        if (pending == null) {
+            pending = new PendingTables();
+            pendingTables.set(pending);
+        }
+        return pending;
+    }
+
+    /**
+     * @param tables  The names of tables
+     * @param version The version taken by {@link #currentVersion()}
+     * @return {@code true} if any of {@code tables} has been modified since {@code version} was taken
+     */
+    public synchronized boolean isModifiedSince(@NonNull String[] tables, long version) {
+        if (allTablesVersion > version) {
+            return true;
+        }
+        for (String tableName : tables) {
+            Long tableVersion = tableVersions.get(tableName);
+            if (tableVersion != null && tableVersion > version) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes all the cached results.
+     */
+    public synchronized void clear() {
+        map.clear();
+    }
+
+    private boolean isFresh(Entry entry) {
+        return !isModifiedSince(entry.tables, entry.version);
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+    public synchronized int hitCount() {
+        return hitCount;
+    }
+
+    public synchronized int missCount() {
+        return missCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        int accesses = hitCount + missCount;
+        int hitPercent = accesses != 0 ? (100 * hitCount / accesses) : 0;
+        return "QueryCache[maxSize=" + maxSize + ",hits=" + hitCount + ",misses=" + missCount
+                + ",hitRate=" + hitPercent + "%]";
+    }
+
+    static class Key {
+
+        final String sql;
+
+        final Object[] bindArgs;
+
+        final int hashCode;
+
+        Key(String sql, @Nullable Object[] bindArgs) {
+            this.sql = sql;
+            this.bindArgs = bindArgs != null ? bindArgs.clone() : null;
+            this.hashCode = sql.hashCode() * 31 + Arrays.deepHashCode(this.bindArgs);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) o;
+            return hashCode == that.hashCode && sql.equals(that.sql) && Arrays.deepEquals(bindArgs, that.bindArgs);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    static class PendingTables {
+
+        final Set<String> tableNames = new HashSet<>();
+
+        boolean allTables;
+    }
+
+    static class Entry {
+
+        final String[] tables;
+
+        final long version;
+
+        final Object value;
+
+        Entry(String[] tables, long version, Object value) {
+            this.tables = tables;
+            this.version = version;
+            this.value = value;
+        }
+    }
+
+    /**
+     * An immutable copy of a cursor, which creates a new cursor for each cache hit.
+     */
+    static class CursorSnapshot {
+
+        final String[] columnNames;
+
+        final List<Object[]> rows;
+
+        CursorSnapshot(@NonNull Cursor cursor) {
+            columnNames = cursor.getColumnNames();
+            rows = new ArrayList<>(cursor.getCount());
+            int columnCount = columnNames.length;
+            while (cursor.moveToNext()) {
+                Object[] row = new Object[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    switch (cursor.getType(i)) {
+                        case Cursor.FIELD_TYPE_INTEGER:
+                            row[i] = cursor.getLong(i);
+                            break;
+                        case Cursor.FIELD_TYPE_FLOAT:
+                            row[i] = cursor.getDouble(i);
+                            break;
+                        case Cursor.FIELD_TYPE_STRING:
+                            row[i] = cursor.getString(i);
+                            break;
+                        case Cursor.FIELD_TYPE_BLOB:
+                            row[i] = cursor.getBlob(i);
+                            break;
+                        default:
+                            row[i] = null;
+                    }
+                }
+                rows.add(row);
+            }
+        }
+
+        @NonNull
+        Cursor newCursor() {
+            MatrixCursor cursor = new MatrixCursor(columnNames, rows.size());
+            for (Object[] row : rows) {
+                cursor.addRow(row);
+            }
+            return cursor;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma;
+
+import com.github.gfx.android.orma.core.Database;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+
+/**
+ * A pool of read-only connections to the database file, enabled by
+ * {@link OrmaDatabaseBuilderBase#readerConnections(int)}.
+ *
+ * <p>Under write-ahead logging, a reader sees the last committed state of the database without blocking the writer or
+ * other readers, so queries from multiple threads run in parallel. Each reader has its own {@link StatementCache}
+ * because compiled statements belong to a connection.</p>
+ *
+ * <p>A reader is checked out by {@link #acquire()} and given back by {@link #release(Reader)}. A cursor keeps its
+ * reader checked out until it is closed, because it reads rows from the connection lazily. Idle readers are
+ * preferred; if all the readers are checked out, they are shared in round-robin, which is safe because a
+ * {@link Database} serializes its own operations.</p>
+ */
+public class ReaderPool {
+
+    public static class Reader {
+
+        final Database db;
+
+        final StatementCache statementCache;
+
+        int users;
+
+        Reader(@NonNull Database db, int statementCacheSize) {
+            this.db = db;
+            this.statementCache = new StatementCache(statementCacheSize);
+        }
+
+        @NonNull
+        public Database getDatabase() {
+            return db;
+        }
+
+        @NonNull
+        public StatementCache getStatementCache() {
+            return statementCache;
+        }
+    }
+
+    final Reader[] readers;
+
+    final ArrayDeque<Reader> idleReaders;
+
+    int next;
+
+    /**
+     * @param databases          Connections to the database file, which are owned by the pool
+     * @param statementCacheSize The max number of compiled statements to cache for each reader
+     */
+    public ReaderPool(@NonNull Database[] databases, int statementCacheSize) {
+        if (databases.length == 0) {
+            throw new IllegalArgumentException("No databases given");
+        }
+        readers = new Reader[databases.length];
+        idleReaders = new ArrayDeque<>(databases.length);
+        for (int i = 0; i < databases.length; i++) {
+            readers[i] = new Reader(databases[i], statementCacheSize);
+            idleReaders.add(readers[i]);
+        }
+    }
+
+    /**
+     * @return A reader, which must be given back by {@link #release(Reader)}
+     */
+    @NonNull
+    public synchronized Reader acquire() {
+        Reader reader = idleReaders.pollFirst();
+        if (reader == null) {
+            reader = readers[next];
+            next = (next + 1) % readers.length;
+        }
+        reader.users++;
+        return reader;
+    }
+
+    public synchronized void release(@NonNull Reader reader) {
+        if (--reader.users == 0) {
+            // LIFO, so that recently used connections with warm caches are reused
+            idleReaders.addFirst(reader);
+        }
+    }
+
+    public int size() {
+        return readers.length;
+    }
+
+    /**
+     * @return The number of readers which are not checked out
+     */
+    public synchronized int idleCount() {
+        return idleReaders.size();
+    }
+
+    /**
+     * Closes all the readers.
+     */
+    public void close() {
+        for (Reader reader : readers) {
+            reader.statementCache.close();
+            reader.db.close();
+        }
+    }
+
+    /**
+     * A cursor which gives back its reader to the pool when it is closed.
+     */
+    static class ReaderCursor extends CursorWrapper {
+
+        final ReaderPool pool;
+
+        Reader reader;
+
+        ReaderCursor(@NonNull Cursor cursor, @NonNull ReaderPool pool, @NonNull Reader reader) {
+            super(cursor);
+            this.pool = pool;
+            this.reader = reader;
+        }
+
+        @Override
+        public void close() {
+            try {
+                super.close();
+            } finally {
+                synchronized (pool) {
+                    if (reader != null) {
+                        pool.release(reader);
+                        reader = null;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -121,6 +121,18 @@ public abstract class Relation<Model, R extends Relation<Model, ?>> extends Orma
         return selector.count();
     }
 
+    /**
+     * Runs the query once and captures the row ids of the result, so that {@code size()}, {@code get(position)}
+     * and {@code indexOf(model)} of the snapshot do not scan the result with {@code OFFSET}.
+     *
+     * @return A snapshot of the relation, which is refreshed when its tables are modified
+     * @see RelationSnapshot
+     */
+    @NonNull
+    public RelationSnapshot<Model> snapshot() {
+        return new RelationSnapshot<>(conn, this);
+    }
+
     @Override
     public abstract Relation<Model, R> clone();
 
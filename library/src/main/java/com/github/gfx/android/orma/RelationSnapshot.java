@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma;
+
+import com.github.gfx.android.orma.exception.NoValueException;
+
+import android.database.Cursor;
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.collection.LongSparseArray;
+import androidx.collection.LruCache;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * A read-only list of the models in a {@link Relation}, which is returned by {@link Relation#snapshot()}.
+ *
+ * <p>The snapshot runs the query of the relation once and keeps only the row ids of the result, so {@link #size()}
+ * is O(1) and {@link #get(int)} loads models in batches of {@link #BATCH_SIZE} with {@code rowid IN (...)}
+ * queries. It takes the row ids again on the next access after the tables of the relation are modified.</p>
+ *
+ * @param <Model> An Orma model
+ */
+public class RelationSnapshot<Model> extends AbstractList<Model> implements RandomAccess {
+
+    public static final int BATCH_SIZE = 64;
+
+    static final int CACHE_SIZE = 16;
+
+    final OrmaConnection conn;
+
+    final Schema<Model> schema;
+
+    final Relation<Model, ?> relation;
+
+    final String[] tableNames;
+
+    // 1 or -1 if the row ids are sorted in ascending or descending order, otherwise 0
+    final int rowIdOrder;
+
+    final LruCache<Integer, Object[]> batches = new LruCache<>(CACHE_SIZE);
+
+    long[] rowIds;
+
+    long version;
+
+    RelationSnapshot(@NonNull OrmaConnection conn, @NonNull Relation<Model, ?> relation) {
+        this.conn = conn;
+        this.schema = relation.getSchema();
+        this.relation = relation.clone();
+        this.tableNames = OrmaConnection.getTableNames(schema);
+        this.rowIdOrder = getRowIdOrder(schema, relation);
+        refresh();
+    }
+
+    static int getRowIdOrder(Schema<?> schema, Relation<?, ?> relation) {
+        if (!OrmaConnection.hasIntegerPrimaryKey(schema) || relation.orderSpecs.size() != 1) {
+            return 0;
+        }
+        OrderSpec<?> orderSpec = relation.orderSpecs.get(0);
+        if (!ModelWithChildren.isSameColumn(orderSpec.column, schema.getPrimaryKey())) {
+            return 0;
+        }
+        return orderSpec.ordering.equals(OrderSpec.ASC) ? 1 : -1;
+    }
+
+    /**
+     * Runs the query of the relation again and discards loaded models.
+     */
+    public synchronized void refresh() {
+        version = conn.getQueryCache().currentVersion();
+
+        rowIds = relation.selector().pluckRowIds();
+        batches.evictAll();
+    }
+
+    void refreshIfModified() {
+        if (conn.getQueryCache().isModifiedSince(tableNames, version)) {
+            refresh();
+        }
+    }
+
+    /**
+     * @return The row ids of the models in the order of the relation
+     */
+    @NonNull
+    public synchronized long[] getRowIds() {
+        refreshIfModified();
+        return rowIds.clone();
+    }
+
+    @Override
+    public synchronized int size() {
+        refreshIfModified();
+        return rowIds.length;
+    }
+
+    @NonNull
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized Model get(@IntRange(from = 0) int position) {
+        refreshIfModified();
+        if (position < 0 || position >= rowIds.length) {
+            throw new IndexOutOfBoundsException("position=" + position + ", size=" + rowIds.length);
+        }
+        int batch = position / BATCH_SIZE;
+        Object[] models = batches.get(batch);
+        if (models == null) {
+            models = loadBatch(batch);
+            batches.put(batch, models);
+        }
+        Model model = (Model) models[position % BATCH_SIZE];
+        if (model == null) {
+            // deleted by another connection
+            throw new NoValueException("No model found for rowid=" + rowIds[position] + " in "
+                    + schema.getModelClass().getCanonicalName());
+        }
+        return model;
+    }
+
+    Object[] loadBatch(int batch) {
+        int start = batch * BATCH_SIZE;
+        int end = Math.min(rowIds.length, start + BATCH_SIZE);
+        long[] batchRowIds = new long[end - start];
+        System.arraycopy(rowIds, start, batchRowIds, 0, batchRowIds.length);
+
+        LongSparseArray<Model> found = conn.findAllByRowIds(schema, batchRowIds);
+        Object[] models = new Object[batchRowIds.length];
+        for (int i = 0; i < batchRowIds.length; i++) {
+            models[i] = found.get(batchRowIds[i]);
+        }
+        return models;
+    }
+
+    /**
+     * Finds the position of a model by its row id, with binary search if the relation is ordered only by the
+     * {@code INTEGER} primary key.
+     *
+     * @param o A model
+     * @return The position of the model, or {@code -1} if it is not in the snapshot
+     */
+    @Override
+    public synchronized int indexOf(Object o) {
+        if (!schema.getModelClass().isInstance(o)) {
+            return -1;
+        }
+        refreshIfModified();
+        Long rowId = getRowId(schema.getModelClass().cast(o));
+        if (rowId == null) {
+            return -1;
+        }
+
+        if (rowIdOrder != 0) {
+            int low = 0;
+            int high = rowIds.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long value = rowIds[mid];
+                if (value == rowId) {
+                    return mid;
+                } else if ((value < rowId) == (rowIdOrder > 0)) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return -1;
+        }
+
+        for (int i = 0; i < rowIds.length; i++) {
+            if (rowIds[i] == rowId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        // row ids are unique
+        return indexOf(o);
+    }
+
+    @Nullable
+    Long getRowId(@NonNull Model model) {
+        ColumnDef<Model, ?> primaryKey = schema.getPrimaryKey();
+        if (OrmaConnection.hasIntegerPrimaryKey(schema)) {
+            return ((Number) primaryKey.getSerialized(model)).longValue();
+        }
+        String sql = "SELECT `_rowid_` FROM " + schema.getEscapedTableName() + " WHERE "
+                + primaryKey.getEscapedName() + " = ?";
+        Cursor cursor = conn.rawQuery(sql, new Object[]{primaryKey.getSerialized(model)});
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+}
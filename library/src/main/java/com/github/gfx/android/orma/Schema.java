@@ -83,6 +83,13 @@ public interface Schema<Model> extends MigrationSchema {
     @NonNull
     Object[] convertToArgs(@NonNull OrmaConnection conn, @NonNull Model mode, boolean withoutAutoId);
 
+    /**
+     * @param conn  Used to retrieve instances that depends on a connection
+     * @param model The target model
+     * @return A hash code of the serialized column values, which is used to detect changed rows between query results
+     */
+    int contentHashCode(@NonNull OrmaConnection conn, @NonNull Model model);
+
     /**
      * @param conn          Used to retrieve instances that depends on a connection
      * @param statement     What to bind columns
@@ -93,6 +100,19 @@ public interface Schema<Model> extends MigrationSchema {
     void bindArgs(@NonNull OrmaConnection conn, @NonNull DatabaseStatement statement, @NonNull Model model,
             boolean withoutAutoId);
 
+    /**
+     * Binds columns at {@code offset + 1}, used to bind a row in a multi-row {@code INSERT} statement.
+     *
+     * @param conn          Used to retrieve instances that depends on a connection
+     * @param statement     What to bind columns
+     * @param model         The target model
+     * @param withoutAutoId If {@code true}, the primary key with {@link PrimaryKey#auto()} is omitted in the {@code INSERT}
+     *                      statement.
+     * @param offset        The number of bind args which precedes the row
+     */
+    void bindArgs(@NonNull OrmaConnection conn, @NonNull DatabaseStatement statement, @NonNull Model model,
+            boolean withoutAutoId, int offset);
+
     @NonNull
     Model newModelFromCursor(@NonNull OrmaConnection conn, @NonNull Cursor cursor, int offset);
 }
@@ -18,22 +18,34 @@ package com.github.gfx.android.orma;
 
 import com.github.gfx.android.orma.exception.InvalidStatementException;
 import com.github.gfx.android.orma.exception.NoValueException;
+import com.github.gfx.android.orma.function.Consumer1;
 import com.github.gfx.android.orma.function.Function1;
+import com.github.gfx.android.orma.internal.CursorIterator;
+import com.github.gfx.android.orma.internal.CursorSpliterator;
 import com.github.gfx.android.orma.internal.OrmaConditionBase;
 import com.github.gfx.android.orma.internal.OrmaIterator;
+import com.github.gfx.android.orma.internal.PrimitiveArrayReader;
 
 import android.annotation.SuppressLint;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.os.Build;
 import androidx.annotation.CheckResult;
 import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
 import androidx.annotation.RestrictTo;
+import androidx.collection.LongSparseArray;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @SuppressLint("Assert")
 public abstract class Selector<Model, S extends Selector<Model, ?>>
@@ -56,6 +68,14 @@ public abstract class Selector<Model, S extends Selector<Model, ?>>
 
     protected long page = -1;
 
+    protected boolean cached;
+
+    @Nullable
+    protected List<ColumnDef<Model, ? extends SingleAssociation<?>>> prefetchColumns;
+
+    @Nullable
+    protected List<ColumnDef<?, ?>> includeForeignKeys;
+
     public Selector(@NonNull OrmaConnection conn) {
         super(conn);
     }
@@ -73,6 +93,13 @@ public abstract class Selector<Model, S extends Selector<Model, ?>>
         limit = selector.limit;
         offset = selector.offset;
         page = selector.page;
+        cached = selector.cached;
+        if (selector.prefetchColumns != null) {
+            prefetchColumns = new ArrayList<>(selector.prefetchColumns);
+        }
+        if (selector.includeForeignKeys != null) {
+            includeForeignKeys = new ArrayList<>(selector.includeForeignKeys);
+        }
     }
 
     @Override
@@ -84,6 +111,71 @@ public abstract class Selector<Model, S extends Selector<Model, ?>>
         return column.getQualifiedName();
     }
 
+    /**
+     * Makes the selector read its results from the query cache of the connection. A cached result is reused until
+     * the table, or the tables of its associations, is modified, so it is suitable for small results read repeatedly,
+     * e.g. {@code count()} and aggregate functions.
+     *
+     * @return the receiver itself
+     * @see QueryCache
+     */
+    @SuppressWarnings("unchecked")
+    public S cached() {
+        this.cached = true;
+        return (S) this;
+    }
+
+    /**
+     * Loads the models of {@code column} for all the results of {@link #toList()} or each chunk of
+     * {@link #forEachChunk(int, Consumer1)} at once, so that {@link SingleAssociation#get()} never queries
+     * the database.
+     *
+     * @param column A {@link SingleAssociation} column
+     * @return the receiver itself
+     * @see SingleAssociation#prefetchAll(Collection)
+     */
+    @SuppressWarnings("unchecked")
+    public S prefetch(@NonNull ColumnDef<Model, ? extends SingleAssociation<?>> column) {
+        if (prefetchColumns == null) {
+            prefetchColumns = new ArrayList<>();
+        }
+        prefetchColumns.add(column);
+        return (S) this;
+    }
+
+    void prefetchAssociations(@NonNull List<Model> models) {
+        if (prefetchColumns == null || models.isEmpty()) {
+            return;
+        }
+        for (ColumnDef<Model, ? extends SingleAssociation<?>> column : prefetchColumns) {
+            List<SingleAssociation<?>> associations = new ArrayList<>(models.size());
+            for (Model model : models) {
+                associations.add(column.get(model));
+            }
+            SingleAssociation.prefetchAll(associations);
+        }
+    }
+
+    /**
+     * Loads the child models which refer to the results by {@code foreignKey} at once, with an {@code IN (...)}
+     * query per 999 results. The children are given by {@link #toListWithChildren()}.
+     *
+     * @param foreignKey A column of the child model which refers to this model, which must have an {@code INTEGER}
+     *                   primary key
+     * @return the receiver itself
+     */
+    @SuppressWarnings("unchecked")
+    public S include(@NonNull ColumnDef<?, ?> foreignKey) {
+        if (!OrmaConnection.hasIntegerPrimaryKey(getSchema())) {
+            throw new IllegalArgumentException(getSchema().getModelClass() + " has no INTEGER primary key");
+        }
+        if (includeForeignKeys == null) {
+            includeForeignKeys = new ArrayList<>();
+        }
+        includeForeignKeys.add(foreignKey);
+        return (S) this;
+    }
+
     @SuppressWarnings("unchecked")
     public S groupBy(@NonNull String groupBy) {
         this.groupBy = groupBy;
@@ -195,11 +287,29 @@ public abstract class Selector<Model, S extends Selector<Model, ?>>
         }
     }
 
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public boolean hasGroupBy() {
+        return groupBy != null || having != null;
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    @Nullable
+    public String getOrderBy() {
+        return orderBy;
+    }
+
     @IntRange(from = 0)
     public int count() {
-        String sql = SQLiteQueryBuilder.buildQueryString(
+        if (cached) {
+            return (int) conn.cachedRawQueryForLong(getSchema(), buildCountQuery(), getBindArgs());
+        }
+        return (int) conn.rawQueryForLong(buildCountQuery(), getBindArgs());
+    }
+
+    @NonNull
+    String buildCountQuery() {
+        return SQLiteQueryBuilder.buildQueryString(
                 false, getSchema().getSelectFromTableClause(), countSelections, getWhereClause(), groupBy, null, null, null);
-        return (int) conn.rawQueryForLong(sql, getBindArgs());
     }
 
     public boolean isEmpty() {
@@ -222,6 +332,17 @@ public abstract class Selector<Model, S extends Selector<Model, ?>>
 
     @Nullable
     public Model getOrNull(@IntRange(from = 0) long position) {
+        if (cached) {
+            String sql = SQLiteQueryBuilder.buildQueryString(false, getSchema().getSelectFromTableClause(),
+                    getSchema().getDefaultResultColumns(), getWhereClause(), groupBy, having, orderBy,
+                    (position + Math.max(offset, 0)) + ",1");
+            Cursor cursor = conn.cachedRawQuery(getSchema(), sql, getBindArgs());
+            try {
+                return cursor.moveToFirst() ? newModelFromCursor(cursor) : null;
+            } finally {
+                cursor.close();
+            }
+        }
         return conn.querySingle(getSchema(), getSchema().getDefaultResultColumns(),
                 getWhereClause(), getBindArgs(), groupBy, having, orderBy, position + Math.max(offset, 0));
     }
@@ -251,6 +372,61 @@ public abstract class Selector<Model, S extends Selector<Model, ?>>
         return result;
     }
 
+    /**
+     * Reads an {@code INTEGER} column into a {@code long[]} without boxing values. {@code NULL} is read as {@code 0}.
+     *
+     * @param column A column to pluck
+     * @return The values of the column
+     */
+    @NonNull
+    public long[] pluckAsLongArray(@NonNull ColumnDef<Model, ?> column) {
+        return pluckAsArray(column.getQualifiedName(), PrimitiveArrayReader.LONG);
+    }
+
+    /**
+     * Reads the row ids of the result into a {@code long[]}, which are the primary keys if the model has an
+     * {@code INTEGER} primary key.
+     *
+     * @return The row ids of the result
+     */
+    @NonNull
+    public long[] pluckRowIds() {
+        String tableAlias = getSchema().getEscapedTableAlias();
+        return pluckAsArray((tableAlias == null ? "" : tableAlias + ".") + "`_rowid_`", PrimitiveArrayReader.LONG);
+    }
+
+    @NonNull
+    <A> A pluckAsArray(@NonNull String column, @NonNull PrimitiveArrayReader<A> reader) {
+        Cursor cursor = executeWithColumns(column);
+        try {
+            return reader.readAll(cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Reads an {@code INTEGER} column into an {@code int[]} without boxing values. {@code NULL} is read as {@code 0}.
+     *
+     * @param column A column to pluck
+     * @return The values of the column
+     */
+    @NonNull
+    public int[] pluckAsIntArray(@NonNull ColumnDef<Model, ?> column) {
+        return pluckAsArray(column.getQualifiedName(), PrimitiveArrayReader.INT);
+    }
+
+    /**
+     * Reads a {@code REAL} column into a {@code double[]} without boxing values. {@code NULL} is read as {@code 0}.
+     *
+     * @param column A column to pluck
+     * @return The values of the column
+     */
+    @NonNull
+    public double[] pluckAsDoubleArray(@NonNull ColumnDef<Model, ?> column) {
+        return pluckAsArray(column.getQualifiedName(), PrimitiveArrayReader.DOUBLE);
+    }
+
     @NonNull
     public <T> List<T> getRawValuesAndMap(@NonNull Function1<Cursor, T> mapper) {
         List<T> result;
@@ -269,12 +445,18 @@ public abstract class Selector<Model, S extends Selector<Model, ?>>
     @CheckResult
     @NonNull
     public Cursor execute() {
+        if (cached) {
+            return conn.cachedRawQuery(getSchema(), buildQuery(), getBindArgs());
+        }
         return conn.rawQuery(buildQuery(), getBindArgs());
     }
 
     @CheckResult
     @NonNull
     public Cursor executeWithColumns(@NonNull String... columns) {
+        if (cached) {
+            return conn.cachedRawQuery(getSchema(), buildQueryWithColumns(columns), getBindArgs());
+        }
         return conn.rawQuery(buildQueryWithColumns(columns), getBindArgs());
     }
 
@@ -297,6 +479,24 @@ public abstract class Selector<Model, S extends Selector<Model, ?>>
                 getWhereClause(), groupBy, having, orderBy, getLimitClause());
     }
 
+    /**
+     * Builds the SQL of the selector once and returns an immutable handle to run it with different bind arguments.
+     * Arguments given to the handle replace the bind arguments of the selector in the same order, e.g.
+     * {@code selectFromTodo().titleEq("").limit(50).prepare().toList("foo")}.
+     *
+     * @return A prepared selector
+     */
+    @NonNull
+    public PreparedSelector<Model> prepare() {
+        String[] columns = getSchema().getDefaultResultColumns();
+        String singleSql = SQLiteQueryBuilder.buildQueryString(
+                false, getSchema().getSelectFromTableClause(), columns,
+                getWhereClause(), groupBy, having, orderBy, (hasOffset() ? getOffset() : 0) + ",1");
+        int argumentCount = bindArgs != null ? bindArgs.size() : 0;
+        return new PreparedSelector<>(conn, getSchema(), buildQueryWithColumns(columns), singleSql, buildCountQuery(),
+                argumentCount);
+    }
+
     /**
      * Executes a query and returns the result as a list.
      *
@@ -304,12 +504,51 @@ public abstract class Selector<Model, S extends Selector<Model, ?>>
      */
     @NonNull
     public List<Model> toList() {
-        return getRawValuesAndMap(new Function1<Cursor, Model>() {
+        List<Model> models = getRawValuesAndMap(new Function1<Cursor, Model>() {
             @Override
             public Model apply(Cursor cursor) {
                 return newModelFromCursor(cursor);
             }
         });
+        prefetchAssociations(models);
+        return models;
+    }
+
+    /**
+     * Executes a query and returns the results with the child models specified by {@link #include(ColumnDef)}.
+     *
+     * @return A list of models with their children
+     */
+    @NonNull
+    public List<ModelWithChildren<Model>> toListWithChildren() {
+        List<Model> models = toList();
+        ColumnDef<Model, ?> primaryKey = getSchema().getPrimaryKey();
+
+        long[] primaryKeys = new long[models.size()];
+        for (int i = 0; i < primaryKeys.length; i++) {
+            primaryKeys[i] = ((Number) primaryKey.getSerialized(models.get(i))).longValue();
+        }
+
+        List<ColumnDef<?, ?>> foreignKeys = includeForeignKeys != null
+                ? includeForeignKeys : Collections.<ColumnDef<?, ?>>emptyList();
+        List<LongSparseArray<? extends List<?>>> childrenMaps = new ArrayList<>(foreignKeys.size());
+        for (ColumnDef<?, ?> foreignKey : foreignKeys) {
+            childrenMaps.add(findChildren(foreignKey, primaryKeys));
+        }
+
+        List<ModelWithChildren<Model>> result = new ArrayList<>(models.size());
+        for (int i = 0; i < primaryKeys.length; i++) {
+            result.add(new ModelWithChildren<>(models.get(i), primaryKeys[i], foreignKeys, childrenMaps));
+        }
+        return result;
+    }
+
+    @NonNull
+    private <Child> LongSparseArray<List<Child>> findChildren(ColumnDef<Child, ?> foreignKey, long[] primaryKeys) {
+        if (primaryKeys.length == 0) {
+            return new LongSparseArray<>();
+        }
+        return conn.findChildren(foreignKey, primaryKeys);
     }
 
     @NonNull
@@ -317,6 +556,105 @@ public abstract class Selector<Model, S extends Selector<Model, ?>>
         return getSchema().newModelFromCursor(conn, cursor, 0);
     }
 
+    /**
+     * Executes a query and passes models to {@code action} one by one, reading a single cursor without
+     * building an intermediate list. This is available in all the API levels. It is not an overload of
+     * {@code forEach()}, because lambdas would be ambiguous between it and {@link Iterable#forEach(Consumer)}.
+     *
+     * @param action A callback for each model
+     */
+    public void forEachModel(@NonNull Consumer1<? super Model> action) {
+        CursorIterator<Model> iterator = cursorIterator();
+        try {
+            while (iterator.hasNext()) {
+                action.accept(iterator.next());
+            }
+        } finally {
+            iterator.close();
+        }
+    }
+
+    /**
+     * Same as {@link #forEachModel(Consumer1)}.
+     *
+     * @param action A callback for each model
+     */
+    @RequiresApi(Build.VERSION_CODES.N)
+    @Override
+    public void forEach(@NonNull final Consumer<? super Model> action) {
+        forEachModel(new Consumer1<Model>() {
+            @Override
+            public void accept(Model model) {
+                action.accept(model);
+            }
+        });
+    }
+
+    /**
+     * Executes a query lazily and returns an iterator backed by a single cursor, which is available in all the API
+     * levels. The cursor is closed when the iterator reaches the end or {@link CursorIterator#close()} is called,
+     * so close it in a {@code finally} block if it may not be fully consumed.
+     *
+     * <p>Unlike {@link #iterator()}, which loads rows page by page, it keeps the cursor open during the iteration.</p>
+     *
+     * @return An iterator of models
+     */
+    @NonNull
+    public CursorIterator<Model> cursorIterator() {
+        return new CursorIterator<>(this);
+    }
+
+    /**
+     * Executes a query and passes models to {@code action} in lists of {@code chunkSize} models.
+     * The last chunk may be smaller than {@code chunkSize}.
+     *
+     * @param chunkSize The max number of models in a chunk
+     * @param action    A callback for each chunk
+     */
+    public void forEachChunk(@IntRange(from = 1) int chunkSize, @NonNull Consumer1<List<Model>> action) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize < 1");
+        }
+        Cursor cursor = execute();
+        try {
+            List<Model> chunk = new ArrayList<>(chunkSize);
+            while (cursor.moveToNext()) {
+                chunk.add(newModelFromCursor(cursor));
+                if (chunk.size() == chunkSize) {
+                    prefetchAssociations(chunk);
+                    action.accept(chunk);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                prefetchAssociations(chunk);
+                action.accept(chunk);
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Executes a query lazily and returns a sequential stream backed by a single cursor.
+     * The cursor is closed when the stream reaches the end or {@link Stream#close()} is called,
+     * so use it in try-with-resources if it may not be fully consumed.
+     *
+     * @return A stream of models
+     */
+    @RequiresApi(Build.VERSION_CODES.N)
+    @NonNull
+    public Stream<Model> stream() {
+        final CursorSpliterator<Model> spliterator = new CursorSpliterator<>(this);
+        return StreamSupport.stream(spliterator, false)
+                .onClose(new Runnable() {
+                    @Override
+                    public void run() {
+                        spliterator.close();
+                    }
+                });
+    }
+
     // implements Iterable<Model>
 
     /**
@@ -25,7 +25,17 @@ import com.github.gfx.android.orma.internal.Schemas;
 import android.os.Parcel;
 import android.os.Parcelable;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
+import androidx.collection.LongSparseArray;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Lazy has-one association. The {@code Model} is assumed to have a primary key with the `long` type.
@@ -40,11 +50,19 @@ public class SingleAssociation<Model> implements Parcelable {
 
     final protected ModelFactory<Model> factory;
 
+    @Nullable
+    final OrmaConnection conn;
+
+    @Nullable
+    final Schema<Model> schema;
+
     Model value = null;
 
     @RestrictTo(RestrictTo.Scope.LIBRARY)
     public SingleAssociation(long id, @NonNull final Model model) {
         this.id = id;
+        this.conn = null;
+        this.schema = null;
         this.factory = new ModelFactory<Model>() {
             @NonNull
             @Override
@@ -58,11 +76,15 @@ public class SingleAssociation<Model> implements Parcelable {
     public SingleAssociation(long id, @NonNull ModelFactory<Model> factory) {
         this.id = id;
         this.factory = factory;
+        this.conn = null;
+        this.schema = null;
     }
 
     // may be called from *_Schema
     public SingleAssociation(@NonNull final OrmaConnection conn, @NonNull final Schema<Model> schema, final long id) {
         this.id = id;
+        this.conn = conn;
+        this.schema = schema;
         this.factory = new ModelFactory<Model>() {
             @NonNull
             @Override
@@ -108,6 +130,56 @@ public class SingleAssociation<Model> implements Parcelable {
         });
     }
 
+    /**
+     * Loads the models of {@code associations} at once, with an {@code IN (...)} query per 999 distinct ids,
+     * so that {@link #get()} never queries the database. Associations which are not loaded from the database
+     * or already have their models are ignored.
+     *
+     * @param associations Associations to load their models
+     */
+    @SuppressWarnings("unchecked")
+    public static void prefetchAll(@NonNull Collection<? extends SingleAssociation<?>> associations) {
+        Map<Schema<?>, List<SingleAssociation<Object>>> groups = new HashMap<>();
+        for (SingleAssociation<?> association : associations) {
+            if (association == null || association.schema == null || association.isLoaded()) {
+                continue;
+            }
+            List<SingleAssociation<Object>> group = groups.get(association.schema);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(association.schema, group);
+            }
+            group.add((SingleAssociation<Object>) association);
+        }
+
+        for (Map.Entry<Schema<?>, List<SingleAssociation<Object>>> entry : groups.entrySet()) {
+            Schema<Object> schema = (Schema<Object>) entry.getKey();
+            List<SingleAssociation<Object>> group = entry.getValue();
+            OrmaConnection conn = group.get(0).conn;
+            if (conn == null) {
+                throw new IllegalArgumentException("No connection to load " + schema.getModelClass() + " from");
+            }
+
+            Set<Long> ids = new LinkedHashSet<>();
+            for (SingleAssociation<Object> association : group) {
+                ids.add(association.id);
+            }
+            long[] idArray = new long[ids.size()];
+            int i = 0;
+            for (long id : ids) {
+                idArray[i++] = id;
+            }
+
+            LongSparseArray<Object> models = conn.findAllByPrimaryKeys(schema, idArray);
+            for (SingleAssociation<Object> association : group) {
+                Object model = models.get(association.id);
+                if (model != null) {
+                    association.setValue(model);
+                }
+            }
+        }
+    }
+
     // use just(id) instead
     @Deprecated
     @NonNull
@@ -139,6 +211,19 @@ public class SingleAssociation<Model> implements Parcelable {
         return value;
     }
 
+    /**
+     * @return {@code true} if the model has been loaded by {@link #get()} or {@link #prefetchAll(Collection)}
+     */
+    public boolean isLoaded() {
+        return value != null;
+    }
+
+    synchronized void setValue(@NonNull Model model) {
+        if (value == null) {
+            value = model;
+        }
+    }
+
     @Deprecated
     @NonNull
     public Model value() throws NoValueException {
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma;
+
+import com.github.gfx.android.orma.core.Database;
+import com.github.gfx.android.orma.core.DatabaseStatement;
+
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded LRU cache of compiled {@link DatabaseStatement}s keyed by SQL text.
+ *
+ * <p>A statement is checked out by {@link #acquire(Database, String)} and is owned by the caller until it is given back
+ * by {@link #release(String, DatabaseStatement)}, so that a statement is never shared by two threads at the same time.
+ * If another thread asks for the same SQL while it is checked out, a new statement is compiled for the thread.</p>
+ */
+public class StatementCache {
+
+    final int maxSize;
+
+    final LinkedHashMap<String, DatabaseStatement> map = new LinkedHashMap<>(16, 0.75f, true);
+
+    int hitCount;
+
+    int missCount;
+
+    boolean closed;
+
+    /**
+     * @param maxSize The max number of idle statements to keep. {@code 0} disables caching.
+     */
+    public StatementCache(@IntRange(from = 0) int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize < 0");
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Checks out a compiled statement for {@code sql}, or compiles a new one if no idle statement is available.
+     *
+     * @param db  A database to compile the statement
+     * @param sql A SQL statement
+     * @return A compiled statement, which must be given back by {@link #release(String, DatabaseStatement)}
+     */
+    @NonNull
+    public DatabaseStatement acquire(@NonNull Database db, @NonNull String sql) {
+        synchronized (this) {
+            DatabaseStatement statement = map.remove(sql);
+            if (statement != null) {
+                hitCount++;
+                return statement;
+            }
+            missCount++;
+        }
+        return db.compileStatement(sql);
+    }
+
+    /**
+     * Gives back a statement checked out by {@link #acquire(Database, String)}. The statement is closed if it is no
+     * longer cacheable.
+     *
+     * @param sql       The SQL statement which {@code statement} is compiled from
+     * @param statement A compiled statement
+     */
+    public void release(@NonNull String sql, @NonNull DatabaseStatement statement) {
+        statement.clearBindings();
+
+        DatabaseStatement evicted;
+        synchronized (this) {
+            if (closed || maxSize == 0) {
+                evicted = statement;
+            } else {
+                evicted = map.put(sql, statement);
+                if (evicted == statement) {
+                    // released twice
+                    evicted = null;
+                } else if (evicted == null && map.size() > maxSize) {
+                    Iterator<Map.Entry<String, DatabaseStatement>> iterator = map.entrySet().iterator();
+                    evicted = iterator.next().getValue();
+                    iterator.remove();
+                }
+            }
+        }
+
+        if (evicted != null) {
+            evicted.close();
+        }
+    }
+
+    /**
+     * Closes all the idle statements. Statements which are checked out are closed when they are released.
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            for (DatabaseStatement statement : map.values()) {
+                statement.close();
+            }
+            map.clear();
+        }
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public int maxSize() {
+        return maxSize;
+    }
+
+    public synchronized int hitCount() {
+        return hitCount;
+    }
+
+    public synchronized int missCount() {
+        return missCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        int accesses = hitCount + missCount;
+        int hitPercent = accesses != 0 ? (100 * hitCount / accesses) : 0;
+        return "StatementCache[maxSize=" + maxSize + ",hits=" + hitCount + ",misses=" + missCount
+                + ",hitRate=" + hitPercent + "%]";
+    }
+}
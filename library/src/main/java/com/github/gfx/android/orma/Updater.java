@@ -61,6 +61,10 @@ public abstract class Updater<Model, U extends Updater<Model, ?>> extends OrmaCo
      * @return The number of rows updated.
      */
     public int execute() {
-        return conn.update(getSchema(), contents, getWhereClause(), getBindArgs());
+        ColumnDef<Model, ?> primaryKey = getSchema().getPrimaryKey();
+        // updating primary keys changes the row ids
+        boolean updatesPrimaryKey = primaryKey != null && contents.containsKey(primaryKey.getEscapedName());
+        return conn.update(getSchema(), contents, getWhereClause(), getBindArgs(),
+                updatesPrimaryKey ? null : getTargetRowIds());
     }
 }
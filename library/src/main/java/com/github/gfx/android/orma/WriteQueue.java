@@ -0,0 +1,363 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A queue of write tasks which a single writer thread applies in groups, returned by
+ * {@link OrmaConnection#writeQueue()}.
+ *
+ * <p>Tasks may be submitted from any thread. The writer takes tasks from the queue until it has
+ * {@code maxBatchSize} tasks or the first task has waited for {@code maxLatency}, and runs them in one transaction,
+ * so that many small writes share one commit instead of paying for their own. Each task completes when the
+ * transaction is committed.</p>
+ *
+ * <p>If a task throws an exception, the transaction is rolled back and the tasks in the group are re-run one by one
+ * in their own transactions, so that only the failing task fails. Tasks should therefore have no side effects other
+ * than writing to the database.</p>
+ *
+ * <p>A task can be cancelled through its future until the writer starts it. Once started, it is no longer
+ * cancellable, and its future completes as usual.</p>
+ *
+ * <p>A task may submit other tasks. They run at once in the transaction of the task, because the writer would never
+ * take them from the queue while it waits for them, so their futures are already done when {@link #submit(Runnable)}
+ * returns, and their exceptions are thrown by it.</p>
+ *
+ * @see OrmaDatabaseBuilderBase#writeQueue(int, long, TimeUnit)
+ * @see com.github.gfx.android.orma.rx.RxOrmaConnection#submitToWriteQueueAsCompletable(Runnable)
+ */
+public class WriteQueue implements Closeable {
+
+    static final String TAG = "Orma";
+
+    static final Runnable NOOP = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    static class Commit extends FutureTask<Void> {
+
+        @Nullable
+        final Runnable task;
+
+        final long submittedAt = System.nanoTime();
+
+        boolean started;
+
+        Commit(@Nullable Runnable task) {
+            super(NOOP, null);
+            this.task = task;
+        }
+
+        /**
+         * @return {@code false} if it has been cancelled
+         */
+        synchronized boolean start() {
+            if (isCancelled()) {
+                return false;
+            }
+            started = true;
+            return true;
+        }
+
+        @Override
+        public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+            // the task may have been written to the database
+            return !started && super.cancel(mayInterruptIfRunning);
+        }
+
+        void succeed() {
+            run();
+        }
+
+        void fail(@NonNull Throwable e) {
+            setException(e);
+        }
+    }
+
+    // tells the writer to stop after the tasks submitted before it
+    static final Commit END = new Commit(null);
+
+    final OrmaConnection conn;
+
+    final int maxBatchSize;
+
+    final long maxLatencyNanos;
+
+    final BlockingQueue<Commit> queue = new LinkedBlockingQueue<>();
+
+    final Thread writer;
+
+    boolean closed;
+
+    final AtomicLong commitCount = new AtomicLong();
+
+    final AtomicLong taskCount = new AtomicLong();
+
+    final AtomicLong totalLatencyNanos = new AtomicLong();
+
+    final AtomicLong maxLatencyNanosObserved = new AtomicLong();
+
+    /**
+     * @param conn         The connection to write to
+     * @param maxBatchSize The max number of tasks in a transaction
+     * @param maxLatency   The max time for which a task waits for other tasks to join its transaction
+     * @param unit         The unit of {@code maxLatency}
+     */
+    public WriteQueue(@NonNull OrmaConnection conn, int maxBatchSize, long maxLatency, @NonNull TimeUnit unit) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be positive: " + maxBatchSize);
+        }
+        this.conn = conn;
+        this.maxBatchSize = maxBatchSize;
+        this.maxLatencyNanos = unit.toNanos(maxLatency);
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "Orma-WriteQueue");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Submits a write task.
+     *
+     * @param task A task to write things to the database
+     * @return A future which completes when the transaction including {@code task} is committed
+     */
+    @NonNull
+    public Future<Void> submit(@NonNull Runnable task) {
+        Commit commit = new Commit(task);
+        if (Thread.currentThread() == writer) {
+            // submitted by a task, which is running in a transaction
+            checkNotClosed();
+            commit.start();
+            task.run();
+            commit.succeed();
+        } else {
+            enqueue(commit);
+        }
+        return commit;
+    }
+
+    synchronized void enqueue(Commit commit) {
+        checkNotClosed();
+        queue.add(commit);
+    }
+
+    synchronized void checkNotClosed() {
+        if (closed) {
+            throw new IllegalStateException("WriteQueue is already closed");
+        }
+    }
+
+    void drain() {
+        List<Commit> batch = new ArrayList<>(maxBatchSize);
+        InterruptedException interrupted = null;
+        boolean running = true;
+        while (running) {
+            try {
+                Commit first = queue.take();
+                if (first == END) {
+                    break;
+                }
+                batch.add(first);
+
+                long deadline = first.submittedAt + maxLatencyNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Commit commit = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (commit == null) {
+                        break;
+                    }
+                    if (commit == END) {
+                        running = false;
+                        break;
+                    }
+                    batch.add(commit);
+                }
+            } catch (InterruptedException e) {
+                synchronized (this) {
+                    closed = true;
+                }
+                interrupted = e;
+                running = false;
+            }
+
+            if (!batch.isEmpty()) {
+                apply(batch);
+                batch.clear();
+            }
+        }
+
+        if (interrupted != null) {
+            // nobody takes the tasks which have been submitted before the queue is closed
+            List<Commit> pending = new ArrayList<>();
+            queue.drainTo(pending);
+            for (Commit commit : pending) {
+                if (commit != END) {
+                    commit.fail(interrupted);
+                }
+            }
+        }
+    }
+
+    void apply(List<Commit> commits) {
+        final List<Commit> batch = new ArrayList<>(commits.size());
+        for (Commit commit : commits) {
+            if (commit.start()) {
+                batch.add(commit);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            conn.transactionSync(new Runnable() {
+                @Override
+                public void run() {
+                    for (Commit commit : batch) {
+                        commit.task.run();
+                    }
+                }
+            });
+        } catch (Throwable e) {
+            if (batch.size() == 1) {
+                batch.get(0).fail(e);
+            } else {
+                if (conn.trace) {
+                    Log.i(TAG, "WriteQueue: re-running " + batch.size() + " tasks one by one: " + e);
+                }
+                for (Commit commit : batch) {
+                    apply(commit);
+                }
+            }
+            return;
+        }
+
+        commitCount.incrementAndGet();
+        for (Commit commit : batch) {
+            succeed(commit);
+        }
+    }
+
+    void apply(Commit commit) {
+        if (!commit.start()) {
+            return;
+        }
+        try {
+            conn.transactionSync(commit.task);
+        } catch (Throwable e) {
+            commit.fail(e);
+            return;
+        }
+        commitCount.incrementAndGet();
+        succeed(commit);
+    }
+
+    void succeed(Commit commit) {
+        long latency = System.nanoTime() - commit.submittedAt;
+        taskCount.incrementAndGet();
+        totalLatencyNanos.addAndGet(latency);
+        long max;
+        do {
+            max = maxLatencyNanosObserved.get();
+        } while (latency > max && !maxLatencyNanosObserved.compareAndSet(max, latency));
+        commit.succeed();
+    }
+
+    /**
+     * @return The number of committed transactions
+     */
+    public long getCommitCount() {
+        return commitCount.get();
+    }
+
+    /**
+     * @return The number of committed tasks, which is larger than {@link #getCommitCount()} as tasks are grouped
+     */
+    public long getTaskCount() {
+        return taskCount.get();
+    }
+
+    /**
+     * @return The average time from submission to commit of committed tasks in milliseconds
+     */
+    public double getAverageCommitLatencyMillis() {
+        long count = taskCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        return (double) totalLatencyNanos.get() / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @return The longest time from submission to commit of committed tasks in milliseconds
+     */
+    public double getMaxCommitLatencyMillis() {
+        return (double) maxLatencyNanosObserved.get() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Stops accepting tasks and waits for the writer to apply the tasks already submitted. If it is called by a task,
+     * it returns without waiting, because the writer applies the other tasks after the task.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.add(END);
+        }
+        if (Thread.currentThread() == writer) {
+            return;
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "WriteQueue{" +
+                "commits=" + getCommitCount() +
+                ", tasks=" + getTaskCount() +
+                ", averageLatencyMillis=" + getAverageCommitLatencyMillis() +
+                ", maxLatencyMillis=" + getMaxCommitLatencyMillis() +
+                '}';
+    }
+}
@@ -19,6 +19,8 @@ package com.github.gfx.android.orma.event;
 import com.github.gfx.android.orma.Selector;
 import com.github.gfx.android.orma.annotation.Experimental;
 
+import androidx.annotation.Nullable;
+
 @Experimental
 public class DataSetChangedEvent<S extends Selector<?, ?>> {
     public enum Type {
@@ -32,9 +34,17 @@ public class DataSetChangedEvent<S extends Selector<?, ?>> {
 
     private final S selector;
 
+    @Nullable
+    private final long[] rowIds;
+
     public DataSetChangedEvent(Type type, S selector) {
+        this(type, selector, null);
+    }
+
+    public DataSetChangedEvent(Type type, S selector, @Nullable long[] rowIds) {
         this.type = type;
         this.selector = selector;
+        this.rowIds = rowIds;
     }
 
     public Type getType() {
@@ -44,4 +54,17 @@ public class DataSetChangedEvent<S extends Selector<?, ?>> {
     public S getSelector() {
         return selector;
     }
+
+    /**
+     * Row ids of the rows which may have been inserted, updated or deleted, which are the primary keys of models with
+     * {@code INTEGER} primary keys. They are given when they are cheaply known, e.g. the row ids of inserted rows and
+     * the primary keys given to {@code idEq()} or {@code idIn()} of updaters and deleters.
+     *
+     * @return A copy of the row ids, because an event is shared by all the observers, or {@code null} if the changed
+     * rows are unknown
+     */
+    @Nullable
+    public long[] getRowIds() {
+        return rowIds != null ? rowIds.clone() : null;
+    }
 }
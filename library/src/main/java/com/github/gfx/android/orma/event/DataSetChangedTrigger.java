@@ -20,23 +20,32 @@ import com.github.gfx.android.orma.Schema;
 import com.github.gfx.android.orma.annotation.Experimental;
 import com.github.gfx.android.orma.core.Database;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 
 /**
- * Helper class for query observables. This class is NOT thread-safe.
+ * Helper class for query observables. Implementations must be thread-safe.
  */
 @RestrictTo(RestrictTo.Scope.LIBRARY)
 @Experimental
 public interface DataSetChangedTrigger {
 
-    <Model> void fire(Database db, DataSetChangedEvent.Type type, Schema<Model> schema);
+    /**
+     * @param rowIds The row ids of the changed rows, or {@code null} if they are unknown
+     */
+    <Model> void fire(Database db, DataSetChangedEvent.Type type, Schema<Model> schema, @Nullable long[] rowIds);
 
+    /**
+     * Fires the events deferred in the transaction of the current thread, which is called after the outermost
+     * transaction ends.
+     */
     void fireForTransaction();
 
     class NoOp implements DataSetChangedTrigger {
 
         @Override
-        public <Model> void fire(Database db, DataSetChangedEvent.Type type, Schema<Model> schema) {
+        public <Model> void fire(Database db, DataSetChangedEvent.Type type, Schema<Model> schema,
+                @Nullable long[] rowIds) {
             // Nothing to do
         }
 
@@ -0,0 +1,444 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma.event;
+
+import com.github.gfx.android.orma.OrmaConnection;
+import com.github.gfx.android.orma.Schema;
+import com.github.gfx.android.orma.annotation.Experimental;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The difference between two results of a query, which is emitted by
+ * {@link com.github.gfx.android.orma.rx.RxRelation#createDiffObservable()}.
+ * Rows are identified by their primary keys and are compared by {@link Schema#contentHashCode(OrmaConnection, Object)}.
+ *
+ * @param <Model> An Orma model
+ */
+@Experimental
+public class DataSetDiff<Model> {
+
+    public enum Type {
+        INSERT,
+        REMOVE,
+        MOVE,
+        CHANGE,
+    }
+
+    /**
+     * Receives the changes of a diff, which has the same methods as {@code ListUpdateCallback} of RecyclerView.
+     *
+     * @see com.github.gfx.android.orma.widget.DataSetDiffCallback
+     */
+    public interface Callback {
+
+        void onInserted(int position, int count);
+
+        void onRemoved(int position, int count);
+
+        void onMoved(int fromPosition, int toPosition);
+
+        void onChanged(int position, int count);
+    }
+
+    /**
+     * A change to the list, in the order in which it must be applied to the previous list.
+     */
+    public static class Change {
+
+        private final Type type;
+
+        private final int position;
+
+        private final int count;
+
+        private final int toPosition;
+
+        Change(Type type, int position, int count, int toPosition) {
+            this.type = type;
+            this.position = position;
+            this.count = count;
+            this.toPosition = toPosition;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public int getPosition() {
+            return position;
+        }
+
+        /**
+         * @return The number of items, which is always {@code 1} for {@link Type#MOVE}
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * @return The destination of {@link Type#MOVE}, or {@code -1} for other types
+         */
+        public int getToPosition() {
+            return toPosition;
+        }
+
+        @Override
+        public String toString() {
+            return "Change{" +
+                    "type=" + type +
+                    ", position=" + position +
+                    ", count=" + count +
+                    ", toPosition=" + toPosition +
+                    '}';
+        }
+    }
+
+    final List<Model> list;
+
+    final Object[] keys;
+
+    final int[] hashes;
+
+    final List<Change> changes;
+
+    final boolean initial;
+
+    DataSetDiff(List<Model> list, Object[] keys, int[] hashes, List<Change> changes, boolean initial) {
+        this.list = list;
+        this.keys = keys;
+        this.hashes = hashes;
+        this.changes = changes;
+        this.initial = initial;
+    }
+
+    /**
+     * @return The new result of the query
+     */
+    @NonNull
+    public List<Model> getList() {
+        return list;
+    }
+
+    /**
+     * @return The changes which turn the previous result into {@link #getList()}
+     */
+    @NonNull
+    public List<Change> getChanges() {
+        return changes;
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /**
+     * @return {@code true} if this is the first result, which is represented as an insertion of all the rows
+     */
+    public boolean isInitial() {
+        return initial;
+    }
+
+    /**
+     * Dispatches the changes to {@code callback}. Use {@link com.github.gfx.android.orma.widget.DataSetDiffCallback}
+     * to dispatch them to a RecyclerView adapter.
+     */
+    public void dispatchUpdatesTo(@NonNull Callback callback) {
+        for (Change change : changes) {
+            switch (change.type) {
+                case INSERT:
+                    callback.onInserted(change.position, change.count);
+                    break;
+                case REMOVE:
+                    callback.onRemoved(change.position, change.count);
+                    break;
+                case MOVE:
+                    callback.onMoved(change.position, change.toPosition);
+                    break;
+                case CHANGE:
+                    callback.onChanged(change.position, change.count);
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DataSetDiff{" +
+                "changes=" + changes +
+                ", initial=" + initial +
+                '}';
+    }
+
+    /**
+     * Creates the first diff of a query, which is an insertion of all the rows of {@code list}.
+     *
+     * @param list The result of the query
+     */
+    @NonNull
+    public static <Model> DataSetDiff<Model> initial(@NonNull OrmaConnection conn, @NonNull Schema<Model> schema,
+            @NonNull List<Model> list) {
+        int size = list.size();
+        Object[] keys = new Object[size];
+        int[] hashes = new int[size];
+        for (int i = 0; i < size; i++) {
+            Model model = list.get(i);
+            keys[i] = schema.getPrimaryKey().getSerialized(model);
+            hashes[i] = schema.contentHashCode(conn, model);
+        }
+        List<Change> changes = size != 0
+                ? Collections.singletonList(new Change(Type.INSERT, 0, size, -1))
+                : Collections.<Change>emptyList();
+        return new DataSetDiff<>(list, keys, hashes, changes, true);
+    }
+
+    /**
+     * Creates the first diff of row ids, which compares results by row ids without loading models. The list of the
+     * diff is empty, and the diff calculated from it has no {@link Type#CHANGE}.
+     *
+     * @param rowIds The row ids of the result, e.g. {@link com.github.gfx.android.orma.Selector#pluckRowIds()}
+     */
+    @NonNull
+    public static <Model> DataSetDiff<Model> ofRowIds(@NonNull long[] rowIds) {
+        int size = rowIds.length;
+        Object[] keys = new Object[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = rowIds[i];
+        }
+        List<Change> changes = size != 0
+                ? Collections.singletonList(new Change(Type.INSERT, 0, size, -1))
+                : Collections.<Change>emptyList();
+        return new DataSetDiff<>(Collections.<Model>emptyList(), keys, new int[size], changes, true);
+    }
+
+    /**
+     * Calculates the difference between {@code previous} and {@code next}. This is O(N log N) and should be called in
+     * a background thread.
+     *
+     * @param previous The previous diff of the query
+     * @param next     The diff created by {@link #initial(OrmaConnection, Schema, List)} for the new result
+     */
+    @NonNull
+    public static <Model> DataSetDiff<Model> calculate(@NonNull DataSetDiff<Model> previous,
+            @NonNull DataSetDiff<Model> next) {
+        Object[] newKeys = next.keys;
+        int[] newHashes = next.hashes;
+        int newSize = newKeys.length;
+
+        List<Change> changes = new ArrayList<>();
+
+        int oldSize = previous.keys.length;
+        Map<Object, Integer> oldIndexes = new HashMap<>(oldSize * 2);
+        for (int i = 0; i < oldSize; i++) {
+            oldIndexes.put(previous.keys[i], i);
+        }
+
+        // newToOld[j] is the old position of the j-th new row, or -1 if it is inserted
+        int[] newToOld = new int[newSize];
+        // oldToNew[i] is the new position of the i-th old row, or -1 if it is removed
+        int[] oldToNew = new int[oldSize];
+        for (int i = 0; i < oldSize; i++) {
+            oldToNew[i] = -1;
+        }
+        for (int j = 0; j < newSize; j++) {
+            Integer i = oldIndexes.remove(newKeys[j]);
+            if (i != null) {
+                newToOld[j] = i;
+                oldToNew[i] = j;
+            } else {
+                newToOld[j] = -1;
+            }
+        }
+
+        // removals, from the tail so that positions are not shifted
+        for (int i = oldSize - 1; i >= 0; ) {
+            if (oldToNew[i] == -1) {
+                int end = i;
+                while (i >= 0 && oldToNew[i] == -1) {
+                    i--;
+                }
+                changes.add(new Change(Type.REMOVE, i + 1, end - i, -1));
+            } else {
+                i--;
+            }
+        }
+
+        // moves; the rows in the longest increasing subsequence stay and the others are moved
+        // to just after their predecessors in the new order
+        int[] current = new int[countNonNegative(oldToNew)];
+        int[] newToCurrent = new int[newSize];
+        for (int i = 0, k = 0; i < oldSize; i++) {
+            if (oldToNew[i] != -1) {
+                current[k] = oldToNew[i];
+                newToCurrent[oldToNew[i]] = k;
+                k++;
+            }
+        }
+        boolean[] stays = longestIncreasingSubsequence(current);
+
+        // The order of rows while moving them is the order of slots: a moved row goes to a slot in the chain just
+        // after the row which stays before it in the new order, or in the chain at the head. Each row remembers
+        // its slot and a Fenwick tree counts the rows in slots, so that a position is found in O(log N).
+        int surviving = current.length;
+        int[] chainSizes = new int[surviving + 1]; // chainSizes[k + 1] is the size of the chain after the k-th row
+        int[] chainRanks = new int[newSize];
+        int anchor = -1;
+        for (int j = 0; j < newSize; j++) {
+            if (newToOld[j] == -1) {
+                continue;
+            }
+            int k = newToCurrent[j];
+            if (stays[k]) {
+                anchor = k;
+            } else {
+                chainRanks[j] = chainSizes[anchor + 1]++;
+            }
+        }
+        int[] chainStarts = new int[surviving + 1]; // the first slots of the chains
+        int[] slots = new int[surviving];
+        int slotCount = chainSizes[0];
+        for (int k = 0; k < surviving; k++) {
+            slots[k] = slotCount++;
+            chainStarts[k + 1] = slotCount;
+            slotCount += chainSizes[k + 1];
+        }
+        int[] tree = new int[slotCount + 1];
+        for (int k = 0; k < surviving; k++) {
+            addToFenwickTree(tree, slots[k], 1);
+        }
+
+        anchor = -1;
+        for (int j = 0; j < newSize; j++) {
+            if (newToOld[j] == -1) {
+                continue;
+            }
+            int k = newToCurrent[j];
+            if (stays[k]) {
+                anchor = k;
+                continue;
+            }
+            int from = countInFenwickTree(tree, slots[k]);
+            addToFenwickTree(tree, slots[k], -1);
+            slots[k] = chainStarts[anchor + 1] + chainRanks[j];
+            int to = countInFenwickTree(tree, slots[k]);
+            addToFenwickTree(tree, slots[k], 1);
+            if (from != to) {
+                changes.add(new Change(Type.MOVE, from, 1, to));
+            }
+        }
+
+        // insertions, from the head so that the preceding rows are in their final positions
+        for (int j = 0; j < newSize; ) {
+            if (newToOld[j] == -1) {
+                int start = j;
+                while (j < newSize && newToOld[j] == -1) {
+                    j++;
+                }
+                changes.add(new Change(Type.INSERT, start, j - start, -1));
+            } else {
+                j++;
+            }
+        }
+
+        // changes, in the final positions
+        for (int j = 0; j < newSize; ) {
+            if (isChanged(previous.hashes, newToOld, newHashes, j)) {
+                int start = j;
+                while (j < newSize && isChanged(previous.hashes, newToOld, newHashes, j)) {
+                    j++;
+                }
+                changes.add(new Change(Type.CHANGE, start, j - start, -1));
+            } else {
+                j++;
+            }
+        }
+
+        return new DataSetDiff<>(next.list, newKeys, newHashes,
+                changes.isEmpty() ? Collections.<Change>emptyList() : changes, false);
+    }
+
+    static boolean isChanged(int[] oldHashes, int[] newToOld, int[] newHashes, int j) {
+        return newToOld[j] != -1 && oldHashes[newToOld[j]] != newHashes[j];
+    }
+
+    static int countNonNegative(int[] values) {
+        int count = 0;
+        for (int value : values) {
+            if (value >= 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    static void addToFenwickTree(int[] tree, int slot, int delta) {
+        for (int i = slot + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * @return The sum of the values in the slots before {@code slot}
+     */
+    static int countInFenwickTree(int[] tree, int slot) {
+        int sum = 0;
+        for (int i = slot; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    /**
+     * @return Flags of the elements which belong to a longest increasing subsequence of {@code values}
+     */
+    static boolean[] longestIncreasingSubsequence(int[] values) {
+        int n = values.length;
+        int[] tails = new int[n]; // tails[k] is the index of the smallest tail of increasing subsequences of length k + 1
+        int[] prev = new int[n];
+        int length = 0;
+        for (int i = 0; i < n; i++) {
+            int value = values[i];
+            int lo = 0;
+            int hi = length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (values[tails[mid]] < value) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            prev[i] = lo > 0 ? tails[lo - 1] : -1;
+            tails[lo] = i;
+            if (lo == length) {
+                length++;
+            }
+        }
+
+        boolean[] result = new boolean[n];
+        for (int i = length > 0 ? tails[length - 1] : -1; i != -1; i = prev[i]) {
+            result[i] = true;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma.internal;
+
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Hash functions for serialized column values, used by generated {@code contentHashCode()}.
+ */
+public class ContentHashes {
+
+    public static int hash(long value) {
+        return (int) (value ^ (value >>> 32));
+    }
+
+    public static int hash(int value) {
+        return value;
+    }
+
+    public static int hash(double value) {
+        return hash(Double.doubleToLongBits(value));
+    }
+
+    public static int hash(boolean value) {
+        return value ? 1231 : 1237;
+    }
+
+    public static int hash(@Nullable Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof byte[]) {
+            return Arrays.hashCode((byte[]) value);
+        } else {
+            return value.hashCode();
+        }
+    }
+}
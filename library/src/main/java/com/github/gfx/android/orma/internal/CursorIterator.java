@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma.internal;
+
+import com.github.gfx.android.orma.Selector;
+
+import android.database.Cursor;
+import androidx.annotation.NonNull;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An iterator which reads models from a single cursor one by one, which is available in all the API levels.
+ * The cursor is opened on the first access and closed when it reaches the end or by {@link #close()}.
+ */
+public class CursorIterator<Model> implements Iterator<Model>, Closeable {
+
+    final Selector<Model, ?> selector;
+
+    Cursor cursor;
+
+    boolean closed = false;
+
+    // whether the cursor has been moved to the row which next() returns
+    boolean moved = false;
+
+    public CursorIterator(@NonNull Selector<Model, ?> selector) {
+        this.selector = selector;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (!moved) {
+            if (cursor == null) {
+                cursor = selector.execute();
+            }
+            if (!cursor.moveToNext()) {
+                close();
+                return false;
+            }
+            moved = true;
+        }
+        return true;
+    }
+
+    @Override
+    public Model next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException("CursorIterator#next()");
+        }
+        moved = false;
+        return selector.newModelFromCursor(cursor);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Iterator#remove()");
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (cursor != null) {
+            cursor.close();
+            cursor = null;
+        }
+    }
+}
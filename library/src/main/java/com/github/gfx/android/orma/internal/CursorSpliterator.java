@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma.internal;
+
+import com.github.gfx.android.orma.Selector;
+
+import android.os.Build;
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Spliterator} which reads models from a single cursor one by one, backed by {@link CursorIterator}.
+ * The cursor is opened on the first access and closed when it reaches the end or by {@link #close()}.
+ */
+@RequiresApi(Build.VERSION_CODES.N)
+public class CursorSpliterator<Model> implements Spliterator<Model> {
+
+    final CursorIterator<Model> iterator;
+
+    public CursorSpliterator(@NonNull Selector<Model, ?> selector) {
+        this.iterator = new CursorIterator<>(selector);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Model> action) {
+        if (!iterator.hasNext()) {
+            return false;
+        }
+        action.accept(iterator.next());
+        return true;
+    }
+
+    @Override
+    public Spliterator<Model> trySplit() {
+        return null; // a cursor can't be split
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    public void close() {
+        iterator.close();
+    }
+}
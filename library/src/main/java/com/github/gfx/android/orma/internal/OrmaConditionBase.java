@@ -25,10 +25,18 @@ import androidx.annotation.Nullable;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 
 public abstract class OrmaConditionBase<Model, C extends OrmaConditionBase<Model, ?>> implements Cloneable {
 
+    /**
+     * The max number of values of {@code IN (...)} bound one by one. Lists larger than this are bound as a JSON
+     * array, which is also free from the limit of the number of bind arguments, 999 before SQLite 3.32.0.
+     */
+    public static final int LARGE_IN_LIST_THRESHOLD = 100;
+
     protected final OrmaConnection conn;
 
     protected String whereConjunction = " AND ";
@@ -36,8 +44,19 @@ public abstract class OrmaConditionBase<Model, C extends OrmaConditionBase<Model
     @Nullable
     protected StringBuilder whereClause;
 
+    /**
+     * Typed bind arguments, i.e. {@code Long}, {@code Double}, {@code String}, {@code byte[]} or {@code null}
+     */
+    @Nullable
+    protected ArrayList<Object> bindArgs;
+
+    /**
+     * Row ids which the conditions are limited to by {@code primaryKey = ?} or {@code primaryKey IN (...)}
+     */
     @Nullable
-    protected ArrayList<String> bindArgs;
+    protected long[] targetRowIds;
+
+    protected boolean hasOrConjunction;
 
     public OrmaConditionBase(@NonNull OrmaConnection conn) {
         this.conn = conn;
@@ -46,6 +65,7 @@ public abstract class OrmaConditionBase<Model, C extends OrmaConditionBase<Model
     public OrmaConditionBase(@NonNull OrmaConditionBase<Model, ?> condition) {
         this(condition.conn);
         where(condition);
+        targetRowIds = condition.getTargetRowIds();
     }
 
     @Override
@@ -63,13 +83,24 @@ public abstract class OrmaConditionBase<Model, C extends OrmaConditionBase<Model
         }
 
         for (Object arg : args) {
-            if (arg == null) {
-                bindArgs.add(null);
-            } else if (arg instanceof Boolean) {
-                bindArgs.add((Boolean) arg ? "1" : "0");
-            } else {
-                bindArgs.add(arg.toString());
-            }
+            bindArgs.add(toBindArg(arg));
+        }
+    }
+
+    @Nullable
+    public static Object toBindArg(@Nullable Object arg) {
+        if (arg == null) {
+            return null;
+        } else if (arg instanceof Boolean) {
+            return (Boolean) arg ? 1L : 0L;
+        } else if (arg instanceof Double || arg instanceof Float) {
+            return ((Number) arg).doubleValue();
+        } else if (arg instanceof Long || arg instanceof Integer || arg instanceof Short || arg instanceof Byte) {
+            return ((Number) arg).longValue();
+        } else if (arg instanceof String || arg instanceof byte[]) {
+            return arg;
+        } else {
+            return arg.toString();
         }
     }
 
@@ -90,6 +121,9 @@ public abstract class OrmaConditionBase<Model, C extends OrmaConditionBase<Model
             whereClause = new StringBuilder(conditions.length() + 2);
         } else {
             whereClause.append(whereConjunction);
+            if (whereConjunction.equals(" OR ")) {
+                hasOrConjunction = true;
+            }
         }
 
         whereClause.append('(');
@@ -101,6 +135,9 @@ public abstract class OrmaConditionBase<Model, C extends OrmaConditionBase<Model
 
     @SuppressWarnings("unchecked")
     public C where(@NonNull ColumnDef<Model, ?> column, @NonNull String operator, @NonNull Object value) {
+        if (operator.equals("=")) {
+            limitTargetRowIds(column, Collections.singletonList(value));
+        }
         return where(buildColumnName(column) + ' ' + operator + " ?", value);
     }
 
@@ -119,8 +156,17 @@ public abstract class OrmaConditionBase<Model, C extends OrmaConditionBase<Model
         return where(conditions, args.toArray());
     }
 
+    /**
+     * Builds {@code column IN (?, ?, ...)}. If there are more than {@link #LARGE_IN_LIST_THRESHOLD} values,
+     * it builds {@code column IN (SELECT value FROM json_each(?))} with a JSON array instead, or inlines the values
+     * if they are all integers and the JSON1 functions are not available.
+     */
     @SuppressWarnings("unchecked")
     protected C in(boolean not, @NonNull ColumnDef<Model, ?> column, @NonNull Collection<?> values) {
+        if (!not) {
+            limitTargetRowIds(column, values);
+        }
+
         String columnName = buildColumnName(column);
 
         StringBuilder clause = new StringBuilder();
@@ -130,6 +176,26 @@ public abstract class OrmaConditionBase<Model, C extends OrmaConditionBase<Model
             clause.append(" NOT");
         }
         clause.append(" IN (");
+
+        if (values.size() > LARGE_IN_LIST_THRESHOLD) {
+            List<Object> args = new ArrayList<>(values.size());
+            for (Object value : values) {
+                args.add(toBindArg(value));
+            }
+
+            if (conn.isJsonSupported()) {
+                String json = buildJsonArray(args);
+                if (json != null) {
+                    clause.append("SELECT value FROM json_each(?))");
+                    return where(clause, json);
+                }
+            }
+            if (appendIntegerLiterals(clause, args)) {
+                clause.append(')');
+                return where(clause);
+            }
+        }
+
         for (int i = 0, size = values.size(); i < size; i++) {
             clause.append('?');
 
@@ -142,6 +208,93 @@ public abstract class OrmaConditionBase<Model, C extends OrmaConditionBase<Model
         return where(clause, values);
     }
 
+    private void limitTargetRowIds(@NonNull ColumnDef<Model, ?> column, @NonNull Collection<?> values) {
+        if (targetRowIds != null || !column.isPrimaryKey() || !"INTEGER".equals(column.storageType)) {
+            return;
+        }
+        long[] rowIds = new long[values.size()];
+        int i = 0;
+        for (Object value : values) {
+            if (!(value instanceof Number)) {
+                return;
+            }
+            rowIds[i++] = ((Number) value).longValue();
+        }
+        // conditions joined with AND may limit the rows more, but never less
+        targetRowIds = rowIds;
+    }
+
+    /**
+     * @return Row ids which the conditions are limited to, or {@code null} if they are unknown
+     */
+    @Nullable
+    protected long[] getTargetRowIds() {
+        return hasOrConjunction ? null : targetRowIds;
+    }
+
+    /**
+     * @return A JSON array of {@code args}, or {@code null} if {@code args} has values which JSON cannot represent
+     */
+    @Nullable
+    static String buildJsonArray(@NonNull List<Object> args) {
+        StringBuilder json = new StringBuilder(args.size() * 8);
+        json.append('[');
+        for (int i = 0, size = args.size(); i < size; i++) {
+            if (i != 0) {
+                json.append(',');
+            }
+            Object arg = args.get(i);
+            if (arg == null) {
+                json.append("null");
+            } else if (arg instanceof Long) {
+                json.append((long) (Long) arg);
+            } else if (arg instanceof Double) {
+                double d = (Double) arg;
+                if (Double.isNaN(d) || Double.isInfinite(d)) {
+                    return null;
+                }
+                json.append(d);
+            } else if (arg instanceof String) {
+                appendJsonString(json, (String) arg);
+            } else {
+                // blobs
+                return null;
+            }
+        }
+        json.append(']');
+        return json.toString();
+    }
+
+    static void appendJsonString(@NonNull StringBuilder json, @NonNull String s) {
+        json.append('"');
+        for (int i = 0, length = s.length(); i < length; i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format(Locale.US, "\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    static boolean appendIntegerLiterals(@NonNull StringBuilder clause, @NonNull List<Object> args) {
+        for (Object arg : args) {
+            if (!(arg instanceof Long)) {
+                return false;
+            }
+        }
+        for (int i = 0, size = args.size(); i < size; i++) {
+            if (i != 0) {
+                clause.append(", ");
+            }
+            clause.append((long) (Long) args.get(i));
+        }
+        return true;
+    }
+
     @SuppressWarnings("unchecked")
     protected <ColumnType, SerializedType> C in(boolean not, @NonNull ColumnDef<Model, ?> column,
             @NonNull Collection<ColumnType> values, Function1<ColumnType, SerializedType> serializer) {
@@ -199,10 +352,9 @@ public abstract class OrmaConditionBase<Model, C extends OrmaConditionBase<Model
     }
 
     @Nullable
-    protected String[] getBindArgs() {
+    protected Object[] getBindArgs() {
         if (bindArgs != null) {
-            String[] array = new String[bindArgs.size()];
-            return bindArgs.toArray(array);
+            return bindArgs.toArray();
         } else {
             return null;
         }
@@ -214,6 +366,8 @@ public abstract class OrmaConditionBase<Model, C extends OrmaConditionBase<Model
         copied.whereConjunction = " AND ";
         copied.whereClause = null;
         copied.bindArgs = null;
+        copied.targetRowIds = null;
+        copied.hasOrConjunction = false;
         return copied;
     }
 }
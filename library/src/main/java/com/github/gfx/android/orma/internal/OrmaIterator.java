@@ -17,56 +17,289 @@
 package com.github.gfx.android.orma.internal;
 
 import com.github.gfx.android.orma.BuildConfig;
+import com.github.gfx.android.orma.ColumnDef;
+import com.github.gfx.android.orma.OrmaConnection;
+import com.github.gfx.android.orma.Schema;
 import com.github.gfx.android.orma.Selector;
 
 import android.database.Cursor;
+import android.database.sqlite.SQLiteQueryBuilder;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
 import java.util.NoSuchElementException;
 
+/**
+ * An iterator which loads rows page by page.
+ *
+ * <p>If the ordering terms of the selector consist of non-null columns, the next page is sought by the ordering keys
+ * of the last row (a.k.a. keyset pagination), with the row id as the tie-breaker. Otherwise it falls back to
+ * {@code OFFSET}. In both cases the iteration ends when a short page is loaded.</p>
+ */
 public class OrmaIterator<Model> implements Iterator<Model> {
     static final int BATCH_SIZE = BuildConfig.DEBUG ? 2 : 1000;
 
     final Selector<Model, ?> selector;
 
-    final long totalCount;
+    final OrmaConnection conn;
+
+    final Schema<Model> schema;
+
+    final long limit;
+
+    /**
+     * Ordering keys to seek the next page, or {@code null} to use {@code OFFSET}
+     */
+    @Nullable
+    final String[] keys;
+
+    final String[] resultColumns;
+
+    @Nullable
+    final String orderBy;
+
+    @Nullable
+    final String seekCondition;
+
+    @Nullable
+    Object[] lastKeyValues;
 
     long totalPos = 0;
 
     long offset;
 
+    boolean lastPage = false;
+
     Cursor cursor;
 
     public OrmaIterator(Selector<Model, ?> selector) {
         this.offset = selector.hasOffset() ? selector.getOffset() : 0L;
-        this.totalCount = selector.hasLimit() ? selector.getLimit() : selector.count();
+        this.limit = selector.hasLimit() ? selector.getLimit() : -1L;
         this.selector = selector.clone().resetLimitClause();
+        this.conn = selector.getConnection();
+        this.schema = selector.getSchema();
+
+        List<String> keyList = new ArrayList<>();
+        List<Boolean> descendingList = new ArrayList<>();
+        if (!selector.hasGroupBy() && buildSeekKeys(selector.getOrderBy(), keyList, descendingList)) {
+            keys = keyList.toArray(new String[keyList.size()]);
+
+            String[] defaultResultColumns = schema.getDefaultResultColumns();
+            resultColumns = new String[defaultResultColumns.length + keys.length];
+            System.arraycopy(defaultResultColumns, 0, resultColumns, 0, defaultResultColumns.length);
+            System.arraycopy(keys, 0, resultColumns, defaultResultColumns.length, keys.length);
+
+            StringBuilder orderByBuilder = new StringBuilder();
+            for (int i = 0; i < keys.length; i++) {
+                if (i != 0) {
+                    orderByBuilder.append(", ");
+                }
+                orderByBuilder.append(keys[i]).append(descendingList.get(i) ? " DESC" : " ASC");
+            }
+            orderBy = orderByBuilder.toString();
+            seekCondition = buildSeekCondition(keys, descendingList);
+        } else {
+            keys = null;
+            resultColumns = schema.getDefaultResultColumns();
+            orderBy = null;
+            seekCondition = null;
+        }
 
         fill();
     }
 
+    /**
+     * Extracts seekable keys from the ordering terms. Only non-null and non-BLOB columns are seekable.
+     *
+     * @return {@code true} if all the ordering terms are seekable
+     */
+    boolean buildSeekKeys(@Nullable String orderingTerms, List<String> keys, List<Boolean> descending) {
+        if (orderingTerms != null && !orderingTerms.trim().isEmpty()) {
+            if (orderingTerms.indexOf('(') != -1) {
+                return false; // function calls or sub-queries
+            }
+            for (String term : orderingTerms.split(",")) {
+                String expr = term.trim();
+                String upperExpr = expr.toUpperCase(Locale.US);
+                boolean desc = false;
+                if (upperExpr.endsWith(" DESC")) {
+                    desc = true;
+                    expr = expr.substring(0, expr.length() - " DESC".length()).trim();
+                } else if (upperExpr.endsWith(" ASC")) {
+                    expr = expr.substring(0, expr.length() - " ASC".length()).trim();
+                }
+
+                ColumnDef<Model, ?> column = findColumn(expr);
+                if (column == null || column.isNullable() || "BLOB".equals(column.storageType)) {
+                    return false;
+                }
+                keys.add(column.getQualifiedName());
+                descending.add(desc);
+
+                if (column.isPrimaryKey()) {
+                    return true; // no tie-breaker required
+                }
+            }
+        }
+
+        String tableName = schema.getEscapedTableAlias() != null
+                ? schema.getEscapedTableAlias()
+                : schema.getEscapedTableName();
+        keys.add(tableName + ".`_rowid_`");
+        descending.add(false);
+        return true;
+    }
+
+    @Nullable
+    ColumnDef<Model, ?> findColumn(@NonNull String expr) {
+        ColumnDef<Model, ?> primaryKey = schema.getPrimaryKey();
+        if (matches(primaryKey, expr)) {
+            return primaryKey;
+        }
+        for (ColumnDef<Model, ?> column : schema.getColumns()) {
+            if (matches(column, expr)) {
+                return column;
+            }
+        }
+        return null;
+    }
+
+    static boolean matches(@NonNull ColumnDef<?, ?> column, @NonNull String expr) {
+        return expr.equals(column.getQualifiedName()) || expr.equals(column.getEscapedName())
+                || expr.equals(column.name);
+    }
+
+    /**
+     * @return {@code (k1 > ?) OR (k1 = ? AND k2 > ?) OR ...}, where {@code <} is used for descending keys
+     */
+    static String buildSeekCondition(String[] keys, List<Boolean> descending) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < keys.length; i++) {
+            if (i != 0) {
+                sb.append(" OR ");
+            }
+            sb.append('(');
+            for (int j = 0; j < i; j++) {
+                sb.append(keys[j]).append(" = ? AND ");
+            }
+            sb.append(keys[i]).append(descending.get(i) ? " < ?" : " > ?");
+            sb.append(')');
+        }
+        return sb.toString();
+    }
+
     void fill() {
         if (cursor != null) {
             cursor.close();
         }
-        cursor = selector
-                .limit(BATCH_SIZE)
-                .offset(offset)
-                .execute();
+
+        long pageSize = limit != -1 ? Math.min(BATCH_SIZE, limit - totalPos) : BATCH_SIZE;
+
+        if (keys == null) {
+            cursor = selector
+                    .limit(pageSize)
+                    .offset(offset)
+                    .execute();
+        } else {
+            cursor = conn.rawQuery(buildSeekQuery(pageSize), buildSeekBindArgs());
+        }
+
+        int count = cursor.getCount();
+        offset += count;
+        lastPage = count < pageSize;
+
+        if (keys != null && cursor.moveToLast()) {
+            lastKeyValues = readKeyValues(cursor, resultColumns.length - keys.length, keys.length);
+        }
 
         cursor.moveToFirst();
+    }
 
-        offset += BATCH_SIZE;
+    String buildSeekQuery(long pageSize) {
+        String whereClause = selector.getWhereClause();
+        String limitClause;
+        if (lastKeyValues == null) {
+            // the first page
+            limitClause = offset != 0 ? offset + "," + pageSize : String.valueOf(pageSize);
+        } else {
+            whereClause = whereClause != null ? "(" + whereClause + ") AND (" + seekCondition + ")" : seekCondition;
+            limitClause = String.valueOf(pageSize);
+        }
+        return SQLiteQueryBuilder.buildQueryString(false, schema.getSelectFromTableClause(), resultColumns,
+                whereClause, null, null, orderBy, limitClause);
+    }
+
+    @Nullable
+    Object[] buildSeekBindArgs() {
+        Object[] bindArgs = selector.getBindArgs();
+        if (lastKeyValues == null) {
+            return bindArgs;
+        }
+
+        int n = lastKeyValues.length;
+        int baseSize = bindArgs != null ? bindArgs.length : 0;
+        Object[] args = new Object[baseSize + (n * (n + 1) / 2)];
+        if (bindArgs != null) {
+            System.arraycopy(bindArgs, 0, args, 0, baseSize);
+        }
+        int pos = baseSize;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j <= i; j++) {
+                args[pos++] = lastKeyValues[j];
+            }
+        }
+        return args;
+    }
+
+    static Object[] readKeyValues(Cursor cursor, int offset, int size) {
+        Object[] values = new Object[size];
+        for (int i = 0; i < size; i++) {
+            int index = offset + i;
+            switch (cursor.getType(index)) {
+                case Cursor.FIELD_TYPE_INTEGER:
+                    values[i] = cursor.getLong(index);
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    values[i] = cursor.getDouble(index);
+                    break;
+                default:
+                    values[i] = cursor.getString(index);
+                    break;
+            }
+        }
+        return values;
+    }
+
+    boolean reachedLimit() {
+        return limit != -1 && totalPos >= limit;
     }
 
     @Override
     public boolean hasNext() {
-        return totalPos < totalCount;
+        if (cursor == null) {
+            return false;
+        }
+        if (!cursor.isAfterLast() && !reachedLimit()) {
+            return true;
+        }
+        if (!lastPage && !reachedLimit()) {
+            fill();
+            if (!cursor.isAfterLast()) {
+                return true;
+            }
+        }
+        cursor.close();
+        cursor = null;
+        return false;
     }
 
     @Override
     public Model next() {
-        if (totalPos >= totalCount) {
+        if (!hasNext()) {
             throw new NoSuchElementException("OrmaIterator#next()");
         }
 
@@ -74,12 +307,9 @@ public class OrmaIterator<Model> implements Iterator<Model> {
 
         totalPos++;
 
-        if (!hasNext()) {
+        if (!cursor.moveToNext() && lastPage || reachedLimit()) {
             cursor.close();
-        } else if (cursor.isLast()) {
-            fill();
-        } else {
-            cursor.moveToNext();
+            cursor = null;
         }
 
         return model;
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma.internal;
+
+import android.database.Cursor;
+import androidx.annotation.IntRange;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Reads the first column of a cursor into a primitive array, e.g. {@code long[]}, without boxing values.
+ * {@code NULL} is read as {@code 0}.
+ *
+ * @param <A> The type of the array
+ */
+public abstract class PrimitiveArrayReader<A> {
+
+    public static final PrimitiveArrayReader<long[]> LONG = new PrimitiveArrayReader<long[]>() {
+        @Override
+        protected long[] newArray(int size) {
+            return new long[size];
+        }
+
+        @Override
+        protected void read(Cursor cursor, long[] array, int index) {
+            array[index] = cursor.getLong(0);
+        }
+
+        @Override
+        protected long[] copyOf(long[] array, int size) {
+            return Arrays.copyOf(array, size);
+        }
+    };
+
+    public static final PrimitiveArrayReader<int[]> INT = new PrimitiveArrayReader<int[]>() {
+        @Override
+        protected int[] newArray(int size) {
+            return new int[size];
+        }
+
+        @Override
+        protected void read(Cursor cursor, int[] array, int index) {
+            array[index] = cursor.getInt(0);
+        }
+
+        @Override
+        protected int[] copyOf(int[] array, int size) {
+            return Arrays.copyOf(array, size);
+        }
+    };
+
+    public static final PrimitiveArrayReader<double[]> DOUBLE = new PrimitiveArrayReader<double[]>() {
+        @Override
+        protected double[] newArray(int size) {
+            return new double[size];
+        }
+
+        @Override
+        protected void read(Cursor cursor, double[] array, int index) {
+            array[index] = cursor.getDouble(0);
+        }
+
+        @Override
+        protected double[] copyOf(double[] array, int size) {
+            return Arrays.copyOf(array, size);
+        }
+    };
+
+    protected abstract A newArray(int size);
+
+    protected abstract void read(Cursor cursor, A array, int index);
+
+    protected abstract A copyOf(A array, int size);
+
+    /**
+     * @return The values of all the rows in {@code cursor}
+     */
+    @NonNull
+    public A readAll(@NonNull Cursor cursor) {
+        A values = newArray(cursor.getCount());
+        for (int pos = 0; cursor.moveToPosition(pos); pos++) {
+            read(cursor, values, pos);
+        }
+        return values;
+    }
+
+    /**
+     * Reads up to {@code chunkSize} rows following the current position of {@code cursor}.
+     *
+     * @return The values of the rows, which is shorter than {@code chunkSize} at the end of {@code cursor},
+     * or {@code null} if there are no more rows
+     */
+    @Nullable
+    public A readChunk(@NonNull Cursor cursor, @IntRange(from = 1) int chunkSize) {
+        A chunk = newArray(chunkSize);
+        int n = 0;
+        while (n < chunkSize && cursor.moveToNext()) {
+            read(cursor, chunk, n++);
+        }
+        if (n == 0) {
+            return null;
+        }
+        return n == chunkSize ? chunk : copyOf(chunk, n);
+    }
+}
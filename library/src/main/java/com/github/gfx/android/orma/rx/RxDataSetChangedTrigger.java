@@ -23,29 +23,40 @@ import com.github.gfx.android.orma.core.Database;
 import com.github.gfx.android.orma.event.DataSetChangedEvent;
 import com.github.gfx.android.orma.event.DataSetChangedTrigger;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import io.reactivex.Observable;
 import io.reactivex.Observer;
 import io.reactivex.subjects.PublishSubject;
 
 /**
- * Helper class for query observables. This class is NOT thread-safe.
+ * Helper class for query observables. Observers are indexed by the schemas of their selectors, so a write notifies
+ * only the observers of the modified table. The observer registry is thread-safe, and the data sets changed in a
+ * transaction are tracked for each thread.
  */
 @RestrictTo(RestrictTo.Scope.LIBRARY)
 @Experimental
 public class RxDataSetChangedTrigger implements DataSetChangedTrigger {
 
-    // TODO: use well-tested concurrent weak maps
-    final Map<WeakReference<Observer<DataSetChangedEvent<?>>>, Selector<?, ?>> observerMap = new ConcurrentHashMap<>();
+    final ConcurrentMap<Schema<?>, Set<ObserverRef>> observerMap = new ConcurrentHashMap<>();
 
-    Set<Schema<?>> changedDataSetInTransaction = null;
+    final ReferenceQueue<Observer<DataSetChangedEvent<?>>> referenceQueue = new ReferenceQueue<>();
+
+    // SQLite transactions are bound to threads, so are the data sets changed in them
+    final ThreadLocal<Map<Schema<?>, ChangedRows>> changedDataSetInTransaction = new ThreadLocal<>();
 
     public <S extends Selector<?, ?>> Observable<DataSetChangedEvent<S>> create(S selector) {
         PublishSubject<DataSetChangedEvent<S>> subject = PublishSubject.create();
@@ -55,58 +66,172 @@ public class RxDataSetChangedTrigger implements DataSetChangedTrigger {
 
     @SuppressWarnings("unchecked")
     public <S extends Selector<?, ?>> void register(Observer<DataSetChangedEvent<S>> observer, Selector<?, ?> selector) {
-        observerMap.put(new WeakReference<>((Observer<DataSetChangedEvent<?>>) (Object) observer), selector);
+        expungeStaleObservers();
+
+        Schema<?> schema = selector.getSchema();
+        Set<ObserverRef> observers = observerMap.get(schema);
+        if (observers == null) {
+            Set<ObserverRef> newObservers = Collections.newSetFromMap(new ConcurrentHashMap<ObserverRef, Boolean>());
+            observers = observerMap.putIfAbsent(schema, newObservers);
+            if (observers == null) {
+                observers = newObservers;
+            }
+        }
+        observers.add(new ObserverRef((Observer<DataSetChangedEvent<?>>) (Object) observer, selector, referenceQueue));
+    }
+
+    /**
+     * @return The number of observers, including the ones which have been garbage-collected but not expunged yet
+     */
+    public int getObserverCount() {
+        int count = 0;
+        for (Set<ObserverRef> observers : observerMap.values()) {
+            count += observers.size();
+        }
+        return count;
     }
 
     @Override
-    public <Model> void fire(Database db, DataSetChangedEvent.Type type, Schema<Model> schema) {
+    public <Model> void fire(Database db, DataSetChangedEvent.Type type, Schema<Model> schema,
+            @Nullable long[] rowIds) {
+        expungeStaleObservers();
+
         if (observerMap.isEmpty()) {
             return;
         }
         if (db.inTransaction()) {
-            addChangedDataSetInTransaction(schema);
+            addChangedDataSetInTransaction(schema, rowIds);
             return;
         }
 
-        for (Map.Entry<WeakReference<Observer<DataSetChangedEvent<?>>>, Selector<?, ?>> entry : observerMap.entrySet()) {
-            Selector<?, ?> selector = entry.getValue();
-            if (schema == selector.getSchema()) {
-                WeakReference<Observer<DataSetChangedEvent<?>>> observerRef = entry.getKey();
-                if (observerRef.get() != null) {
-                    observerRef.get().onNext(new DataSetChangedEvent<>(type, selector));
-                } else {
-                    observerMap.remove(observerRef);
-                }
-            }
-        }
+        notifyObservers(type, schema, rowIds);
     }
 
-    private void addChangedDataSetInTransaction(Schema<?> schema) {
-        if (changedDataSetInTransaction == null) {
-            changedDataSetInTransaction = new HashSet<>();
+    private void addChangedDataSetInTransaction(Schema<?> schema, @Nullable long[] rowIds) {
+        Map<Schema<?>, ChangedRows> changedDataSet = changedDataSetInTransaction.get();
+        if (changedDataSet == null) {
+            changedDataSet = new HashMap<>();
+            changedDataSetInTransaction.set(changedDataSet);
         }
 
-        changedDataSetInTransaction.add(schema);
+        ChangedRows changedRows = changedDataSet.get(schema);
+        if (changedRows == null) {
+            changedRows = new ChangedRows();
+            changedDataSet.put(schema, changedRows);
+        }
+        changedRows.add(rowIds);
     }
 
+    /**
+     * Notifies the observers of the data sets changed in the transaction of the current thread. This must be called
+     * after the outermost transaction ends.
+     */
     @Override
     public void fireForTransaction() {
-        Set<Schema<?>> schemaSet = changedDataSetInTransaction;
-        changedDataSetInTransaction = null;
+        Map<Schema<?>, ChangedRows> changedDataSet = changedDataSetInTransaction.get();
+        changedDataSetInTransaction.remove();
 
-        if (schemaSet == null) {
+        if (changedDataSet == null) {
             return;
         }
-        for (Map.Entry<WeakReference<Observer<DataSetChangedEvent<?>>>, Selector<?, ?>> entry : observerMap.entrySet()) {
-            Selector<?, ?> selector = entry.getValue();
-            if (schemaSet.contains(selector.getSchema())) {
-                WeakReference<Observer<DataSetChangedEvent<?>>> observerRef = entry.getKey();
-                if (observerRef.get() != null) {
-                    observerRef.get().onNext(new DataSetChangedEvent<>(DataSetChangedEvent.Type.TRANSACTION, selector));
-                } else {
-                    observerMap.remove(observerRef);
+        for (Map.Entry<Schema<?>, ChangedRows> entry : changedDataSet.entrySet()) {
+            notifyObservers(DataSetChangedEvent.Type.TRANSACTION, entry.getKey(), entry.getValue().toArray());
+        }
+    }
+
+    private void notifyObservers(@NonNull DataSetChangedEvent.Type type, @NonNull Schema<?> schema,
+            @Nullable long[] rowIds) {
+        Set<ObserverRef> observers = observerMap.get(schema);
+        if (observers == null) {
+            return;
+        }
+        for (ObserverRef observerRef : observers) {
+            Observer<DataSetChangedEvent<?>> observer = observerRef.get();
+            if (observer != null) {
+                observer.onNext(rowIds != null
+                        ? new DataSetChangedEvent<>(type, observerRef.selector, rowIds)
+                        : observerRef.getEvent(type));
+            } else {
+                observers.remove(observerRef);
+            }
+        }
+    }
+
+    private void expungeStaleObservers() {
+        Reference<? extends Observer<DataSetChangedEvent<?>>> ref;
+        while ((ref = referenceQueue.poll()) != null) {
+            ObserverRef observerRef = (ObserverRef) ref;
+            Set<ObserverRef> observers = observerMap.get(observerRef.selector.getSchema());
+            if (observers != null) {
+                observers.remove(observerRef);
+            }
+        }
+    }
+
+    static class ObserverRef extends WeakReference<Observer<DataSetChangedEvent<?>>> {
+
+        final Selector<?, ?> selector;
+
+        // events without row ids are immutable, so they are shared by all the notifications of the observer
+        final DataSetChangedEvent<?>[] events = new DataSetChangedEvent<?>[DataSetChangedEvent.Type.values().length];
+
+        ObserverRef(Observer<DataSetChangedEvent<?>> observer, Selector<?, ?> selector,
+                ReferenceQueue<Observer<DataSetChangedEvent<?>>> queue) {
+            super(observer, queue);
+            this.selector = selector;
+        }
+
+        DataSetChangedEvent<?> getEvent(DataSetChangedEvent.Type type) {
+            DataSetChangedEvent<?> event = events[type.ordinal()];
+            if (event == null) {
+                event = new DataSetChangedEvent<>(type, selector);
+                events[type.ordinal()] = event;
+            }
+            return event;
+        }
+    }
+
+    /**
+     * The row ids changed in a transaction, which are unknown once a write of unknown rows is added.
+     */
+    static class ChangedRows {
+
+        long[] rowIds = new long[16];
+
+        int size;
+
+        boolean unknown;
+
+        void add(@Nullable long[] newRowIds) {
+            if (unknown) {
+                return;
+            }
+            if (newRowIds == null) {
+                unknown = true;
+                rowIds = null;
+                return;
+            }
+            if (size + newRowIds.length > rowIds.length) {
+                rowIds = Arrays.copyOf(rowIds, Math.max(rowIds.length * 2, size + newRowIds.length));
+            }
+            System.arraycopy(newRowIds, 0, rowIds, size, newRowIds.length);
+            size += newRowIds.length;
+        }
+
+        @Nullable
+        long[] toArray() {
+            if (unknown) {
+                return null;
+            }
+            long[] result = Arrays.copyOf(rowIds, size);
+            Arrays.sort(result);
+            int n = 0;
+            for (int i = 0; i < result.length; i++) {
+                if (i == 0 || result[i] != result[i - 1]) {
+                    result[n++] = result[i];
                 }
             }
+            return n != result.length ? Arrays.copyOf(result, n) : result;
         }
     }
 }
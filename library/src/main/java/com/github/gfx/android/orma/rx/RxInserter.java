@@ -76,7 +76,8 @@ public class RxInserter<Model> extends Inserter<Model> {
     }
 
     /**
-     * {@link Observable} wrapper to {@code execute(Iterable<Model>)}
+     * {@link Observable} wrapper to {@code executeAll(Iterable<Model>)}.
+     * The row ids are emitted after all the models are inserted.
      *
      * @param models model objects to insert
      * @return It yields the inserted row ids
@@ -87,8 +88,9 @@ public class RxInserter<Model> extends Inserter<Model> {
         return Observable.create(new ObservableOnSubscribe<Long>() {
             @Override
             public void subscribe(ObservableEmitter<Long> emitter) throws Exception {
-                for (Model model : models) {
-                    emitter.onNext(execute(model));
+                long[] rowIds = executeAll(models);
+                for (int i = 0; !emitter.isDisposed() && i < rowIds.length; i++) {
+                    emitter.onNext(rowIds[i]);
                 }
                 emitter.onComplete();
             }
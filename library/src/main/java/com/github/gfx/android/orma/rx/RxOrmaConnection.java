@@ -20,15 +20,22 @@ import com.github.gfx.android.orma.OrmaConnection;
 import com.github.gfx.android.orma.OrmaDatabaseBuilderBase;
 import com.github.gfx.android.orma.Schema;
 import com.github.gfx.android.orma.Selector;
+import com.github.gfx.android.orma.WriteQueue;
 import com.github.gfx.android.orma.annotation.Experimental;
 import com.github.gfx.android.orma.event.DataSetChangedEvent;
 import com.github.gfx.android.orma.event.DataSetChangedTrigger;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
+import io.reactivex.Completable;
+import io.reactivex.CompletableSource;
 import io.reactivex.Observable;
+import io.reactivex.Scheduler;
 
 /**
  * Low-level interface to Orma database connection with RxJava support.
@@ -37,8 +44,61 @@ public class RxOrmaConnection extends OrmaConnection {
 
     final RxDataSetChangedTrigger trigger = new RxDataSetChangedTrigger();
 
+    final long queryObservableWindowMillis;
+
+    @Nullable
+    volatile Scheduler queryObservableScheduler;
+
     public RxOrmaConnection(@NonNull OrmaDatabaseBuilderBase<?> builder, List<Schema<?>> schemas) {
         super(builder, schemas);
+        this.queryObservableWindowMillis = builder.getQueryObservableWindowMillis();
+    }
+
+    /**
+     * @return The time window of query observables in milliseconds, set by
+     * {@link OrmaDatabaseBuilderBase#queryObservableWindow(long, TimeUnit)}
+     */
+    public long getQueryObservableWindowMillis() {
+        return queryObservableWindowMillis;
+    }
+
+    /**
+     * @return The scheduler of query observables, or {@code null} to use the defaults
+     * @see #setQueryObservableScheduler(Scheduler)
+     */
+    @Nullable
+    public Scheduler getQueryObservableScheduler() {
+        return queryObservableScheduler;
+    }
+
+    /**
+     * Sets the scheduler on which {@code createQueryObservable()} emits events and {@code createDiffObservable()}
+     * loads results. The defaults are {@code Schedulers.computation()} for query observables with time windows,
+     * the writer thread for the other query observables, and {@code Schedulers.io()} for diff observables.
+     * It applies to the observables created after it is set.
+     *
+     * @param scheduler The scheduler, or {@code null} to use the defaults
+     */
+    public void setQueryObservableScheduler(@Nullable Scheduler scheduler) {
+        this.queryObservableScheduler = scheduler;
+    }
+
+    /**
+     * Submits a write task to {@link #writeQueue()} on subscription. The completable waits for the commit in the
+     * subscribing thread, so subscribe to it on a background scheduler.
+     *
+     * @param task A task to write things to the database
+     * @return A completable which completes when the transaction including {@code task} is committed
+     * @see WriteQueue#submit(Runnable)
+     */
+    @NonNull
+    public Completable submitToWriteQueueAsCompletable(@NonNull final Runnable task) {
+        return Completable.defer(new Callable<CompletableSource>() {
+            @Override
+            public CompletableSource call() throws Exception {
+                return Completable.fromFuture(writeQueue().submit(task));
+            }
+        });
     }
 
     @Experimental
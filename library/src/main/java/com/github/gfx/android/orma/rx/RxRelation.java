@@ -19,18 +19,23 @@ package com.github.gfx.android.orma.rx;
 import com.github.gfx.android.orma.ColumnDef;
 import com.github.gfx.android.orma.Inserter;
 import com.github.gfx.android.orma.ModelFactory;
+import com.github.gfx.android.orma.OrmaConnection;
 import com.github.gfx.android.orma.Relation;
+import com.github.gfx.android.orma.Schema;
 import com.github.gfx.android.orma.Selector;
 import com.github.gfx.android.orma.annotation.Experimental;
 import com.github.gfx.android.orma.annotation.OnConflict;
 import com.github.gfx.android.orma.annotation.PrimaryKey;
 import com.github.gfx.android.orma.event.DataSetChangedEvent;
+import com.github.gfx.android.orma.event.DataSetDiff;
 
 import androidx.annotation.CheckResult;
 import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import io.reactivex.Maybe;
@@ -39,8 +44,12 @@ import io.reactivex.MaybeOnSubscribe;
 import io.reactivex.Observable;
 import io.reactivex.ObservableEmitter;
 import io.reactivex.ObservableOnSubscribe;
+import io.reactivex.Scheduler;
 import io.reactivex.Single;
+import io.reactivex.functions.BiFunction;
 import io.reactivex.functions.Function;
+import io.reactivex.functions.Predicate;
+import io.reactivex.schedulers.Schedulers;
 
 /**
  * Representation of a relation, or a {@code SELECT} query with RxJava support.
@@ -268,20 +277,117 @@ public abstract class RxRelation<Model, R extends RxRelation<Model, ?>> extends
 
     /**
      * Experimental API to observe data-set changed events.
+     * Events are coalesced by the connection-wide settings, {@code OrmaDatabase.Builder#queryObservableWindow()}
+     * and {@link RxOrmaConnection#setQueryObservableScheduler(Scheduler)}.
      *
      * @param <S> A concrete {@link Selector} class.
      * @return A hot observable that yields {@link Selector} when the target data-set is changed.
      */
     @Experimental
-    @SuppressWarnings("unchecked")
     public <S extends Selector<Model, ?>> Observable<S> createQueryObservable() {
-        return conn.createEventObservable((S) selector())
+        return createQueryObservable(conn.getQueryObservableWindowMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Experimental API to observe data-set changed events, which yields {@link Selector} at most once per
+     * {@code window}. The last event in a window is always emitted at the end of the window, so subscribers see the
+     * latest data-set.
+     *
+     * @param window The length of the time window. {@code 0} emits an event for each write.
+     * @param unit   The unit of {@code window}
+     * @param <S>    A concrete {@link Selector} class.
+     * @return A hot observable that yields {@link Selector} when the target data-set is changed.
+     */
+    @Experimental
+    public <S extends Selector<Model, ?>> Observable<S> createQueryObservable(long window, @NonNull TimeUnit unit) {
+        Scheduler scheduler = conn.getQueryObservableScheduler();
+        if (scheduler == null && window > 0) {
+            scheduler = Schedulers.computation();
+        }
+        return createQueryObservable(window, unit, scheduler);
+    }
+
+    /**
+     * Experimental API to observe data-set changed events, which yields {@link Selector} at most once per
+     * {@code window} on {@code scheduler}.
+     *
+     * @param window    The length of the time window. {@code 0} emits an event for each write.
+     * @param unit      The unit of {@code window}
+     * @param scheduler The scheduler to emit events, or {@code null} to emit them on the writer thread, which
+     *                  requires {@code window} to be {@code 0}
+     * @param <S>       A concrete {@link Selector} class.
+     * @return A hot observable that yields {@link Selector} when the target data-set is changed.
+     */
+    @Experimental
+    @SuppressWarnings("unchecked")
+    public <S extends Selector<Model, ?>> Observable<S> createQueryObservable(long window, @NonNull TimeUnit unit,
+            @Nullable Scheduler scheduler) {
+        Observable<S> observable = conn.createEventObservable((S) selector())
                 .map(new Function<DataSetChangedEvent<S>, S>() {
                     @Override
                     public S apply(DataSetChangedEvent<S> event) throws Exception {
                         return event.getSelector();
                     }
                 });
+        if (window > 0) {
+            if (scheduler == null) {
+                throw new IllegalArgumentException("A scheduler is required for a time window");
+            }
+            // the first event in a window is emitted on the writer thread
+            return observable.throttleLatest(window, unit, scheduler, true)
+                    .observeOn(scheduler);
+        } else if (scheduler != null) {
+            return observable.observeOn(scheduler);
+        } else {
+            return observable;
+        }
+    }
+
+    /**
+     * Experimental API to observe the differences of the results of the query, which are calculated on the
+     * connection-wide {@link RxOrmaConnection#setQueryObservableScheduler(Scheduler)} or {@link Schedulers#io()}.
+     *
+     * @return A hot observable that yields the first result and then the differences from the previous results.
+     */
+    @Experimental
+    public Observable<DataSetDiff<Model>> createDiffObservable() {
+        Scheduler scheduler = conn.getQueryObservableScheduler();
+        return createDiffObservable(scheduler != null ? scheduler : Schedulers.io());
+    }
+
+    /**
+     * Experimental API to observe the differences of the results of the query. Each result is loaded and compared
+     * with the previous one by primary keys and {@link Schema#contentHashCode(OrmaConnection, Object)} on
+     * {@code scheduler}, and results without any differences are not emitted.
+     *
+     * @param scheduler The scheduler to load results and to calculate differences
+     * @return A hot observable that yields the first result and then the differences from the previous results.
+     */
+    @Experimental
+    public Observable<DataSetDiff<Model>> createDiffObservable(@NonNull Scheduler scheduler) {
+        final Schema<Model> schema = getSchema();
+        return this.<Selector<Model, ?>>createQueryObservable()
+                .startWith(selector())
+                .observeOn(scheduler)
+                .map(new Function<Selector<Model, ?>, DataSetDiff<Model>>() {
+                    @Override
+                    public DataSetDiff<Model> apply(Selector<Model, ?> selector) throws Exception {
+                        return DataSetDiff.initial(conn, schema, selector.toList());
+                    }
+                })
+                .scan(new BiFunction<DataSetDiff<Model>, DataSetDiff<Model>, DataSetDiff<Model>>() {
+                    @Override
+                    public DataSetDiff<Model> apply(DataSetDiff<Model> previous, DataSetDiff<Model> next)
+                            throws Exception {
+                        return DataSetDiff.calculate(previous, next);
+                    }
+                })
+                .filter(new Predicate<DataSetDiff<Model>>() {
+                    @Override
+                    public boolean test(DataSetDiff<Model> diff) throws Exception {
+                        return diff.isInitial() || !diff.isEmpty();
+                    }
+                });
     }
 
     /**
@@ -20,9 +20,11 @@ import com.github.gfx.android.orma.ColumnDef;
 import com.github.gfx.android.orma.OrmaConnection;
 import com.github.gfx.android.orma.Relation;
 import com.github.gfx.android.orma.Selector;
+import com.github.gfx.android.orma.internal.PrimitiveArrayReader;
 
 import android.database.Cursor;
 import androidx.annotation.CheckResult;
+import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
 
 import java.util.concurrent.Callable;
@@ -75,6 +77,56 @@ public abstract class RxSelector<Model, S extends RxSelector<Model, ?>> extends
         });
     }
 
+    /**
+     * A primitive counterpart of {@link #pluckAsObservable(ColumnDef)}, which emits an {@code INTEGER} column
+     * in chunks of {@code chunkSize} values. The last chunk may be shorter.
+     */
+    @NonNull
+    public Observable<long[]> pluckAsLongArrayObservable(final ColumnDef<Model, ?> column,
+            @IntRange(from = 1) final int chunkSize) {
+        return pluckAsArrayObservable(column, chunkSize, PrimitiveArrayReader.LONG);
+    }
+
+    /**
+     * A primitive counterpart of {@link #pluckAsObservable(ColumnDef)}, which emits an {@code INTEGER} column
+     * in chunks of {@code chunkSize} values. The last chunk may be shorter.
+     */
+    @NonNull
+    public Observable<int[]> pluckAsIntArrayObservable(final ColumnDef<Model, ?> column,
+            @IntRange(from = 1) final int chunkSize) {
+        return pluckAsArrayObservable(column, chunkSize, PrimitiveArrayReader.INT);
+    }
+
+    /**
+     * A primitive counterpart of {@link #pluckAsObservable(ColumnDef)}, which emits a {@code REAL} column
+     * in chunks of {@code chunkSize} values. The last chunk may be shorter.
+     */
+    @NonNull
+    public Observable<double[]> pluckAsDoubleArrayObservable(final ColumnDef<Model, ?> column,
+            @IntRange(from = 1) final int chunkSize) {
+        return pluckAsArrayObservable(column, chunkSize, PrimitiveArrayReader.DOUBLE);
+    }
+
+    @NonNull
+    private <A> Observable<A> pluckAsArrayObservable(final ColumnDef<Model, ?> column, final int chunkSize,
+            final PrimitiveArrayReader<A> reader) {
+        return Observable.create(new ObservableOnSubscribe<A>() {
+            @Override
+            public void subscribe(ObservableEmitter<A> emitter) throws Exception {
+                Cursor cursor = executeWithColumns(column.getQualifiedName());
+                try {
+                    A chunk;
+                    while (!emitter.isDisposed() && (chunk = reader.readChunk(cursor, chunkSize)) != null) {
+                        emitter.onNext(chunk);
+                    }
+                } finally {
+                    cursor.close();
+                }
+                emitter.onComplete();
+            }
+        });
+    }
+
     @NonNull
     public Observable<Model> executeAsObservable() {
         return Observable.create(new ObservableOnSubscribe<Model>() {
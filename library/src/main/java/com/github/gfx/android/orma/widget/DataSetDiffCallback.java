@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma.widget;
+
+import com.github.gfx.android.orma.annotation.Experimental;
+import com.github.gfx.android.orma.event.DataSetDiff;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
+import androidx.recyclerview.widget.ListUpdateCallback;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Dispatches the changes of {@link DataSetDiff} to a {@link ListUpdateCallback} of RecyclerView.
+ *
+ * <pre>{@code
+ * diff.dispatchUpdatesTo(new DataSetDiffCallback(adapter));
+ * }</pre>
+ */
+@Experimental
+public class DataSetDiffCallback implements DataSetDiff.Callback {
+
+    final ListUpdateCallback callback;
+
+    public DataSetDiffCallback(@NonNull ListUpdateCallback callback) {
+        this.callback = callback;
+    }
+
+    public DataSetDiffCallback(@NonNull RecyclerView.Adapter<?> adapter) {
+        this(new AdapterListUpdateCallback(adapter));
+    }
+
+    @Override
+    public void onInserted(int position, int count) {
+        callback.onInserted(position, count);
+    }
+
+    @Override
+    public void onRemoved(int position, int count) {
+        callback.onRemoved(position, count);
+    }
+
+    @Override
+    public void onMoved(int fromPosition, int toPosition) {
+        callback.onMoved(fromPosition, toPosition);
+    }
+
+    @Override
+    public void onChanged(int position, int count) {
+        callback.onChanged(position, count, null);
+    }
+}
@@ -24,8 +24,13 @@ import com.github.gfx.android.orma.exception.NoValueException;
 import com.github.gfx.android.orma.rx.RxRelation;
 
 import android.content.Context;
+import android.util.Log;
 import android.view.LayoutInflater;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Callable;
 
 import androidx.annotation.CheckResult;
@@ -37,6 +42,8 @@ import io.reactivex.Single;
 import io.reactivex.disposables.CompositeDisposable;
 import io.reactivex.disposables.Disposable;
 import io.reactivex.functions.Consumer;
+import io.reactivex.observers.DisposableSingleObserver;
+import io.reactivex.schedulers.Schedulers;
 
 /**
  * A helper class that provides adapter class details.
@@ -46,18 +53,46 @@ import io.reactivex.functions.Consumer;
 @Experimental
 public class OrmaAdapter<Model> {
 
-    public static final int CACHE_SIZE = BuildConfig.DEBUG ? 2 : 256;
+    static final String TAG = "Orma";
+
+    /**
+     * The number of models loaded by a query. Pages are aligned to this size.
+     */
+    public static final int PAGE_SIZE = BuildConfig.DEBUG ? 2 : 32;
+
+    /**
+     * The number of models kept in the page cache.
+     */
+    public static final int CACHE_SIZE = BuildConfig.DEBUG ? 4 : 256;
 
     protected final Context context;
 
     protected final RxRelation<Model, ?> relation;
 
-    protected final LruCache<Integer, Model> cache = new LruCache<>(CACHE_SIZE);
+    protected final LruCache<Integer, List<Model>> pages = new LruCache<Integer, List<Model>>(CACHE_SIZE) {
+        @Override
+        protected int sizeOf(@NonNull Integer page, @NonNull List<Model> models) {
+            return Math.max(models.size(), 1);
+        }
+    };
 
     protected final Observable<Selector<Model, ?>> queryObservable;
 
     protected final CompositeDisposable queryObservableSubscription;
 
+    final Object lock = new Object();
+
+    final Set<Integer> loadingPages = Collections.synchronizedSet(new HashSet<Integer>());
+
+    // incremented when the data set is changed, to discard pages and counts loaded before that
+    volatile int generation = 0;
+
+    volatile int itemCount = -1;
+
+    int lastPosition = -1;
+
+    int scrollDirection = 1;
+
     public OrmaAdapter(@NonNull Context context, @NonNull RxRelation<Model, ?> relation) {
         this.context = context;
         this.relation = relation;
@@ -67,11 +102,19 @@ public class OrmaAdapter<Model> {
         queryObservableSubscription.add(queryObservable.subscribe(new Consumer<Selector<Model, ?>>() {
             @Override
             public void accept(Selector<Model, ?> models) throws Exception {
-                cache.evictAll();
+                invalidate();
             }
         }));
     }
 
+    void invalidate() {
+        synchronized (lock) {
+            generation++;
+            itemCount = -1;
+            pages.evictAll();
+        }
+    }
+
     @NonNull
     public Observable<Selector<Model, ?>> getQueryObservable() {
         return queryObservable;
@@ -91,8 +134,21 @@ public class OrmaAdapter<Model> {
         return LayoutInflater.from(context);
     }
 
+    /**
+     * @return The number of models in the relation, which is cached until the data set is changed
+     */
     public int getItemCount() {
-        return relation.count();
+        int count = itemCount;
+        if (count == -1) {
+            int gen = generation;
+            count = relation.count();
+            synchronized (lock) {
+                if (gen == generation) {
+                    itemCount = count;
+                }
+            }
+        }
+        return count;
     }
 
     @NonNull
@@ -109,18 +165,105 @@ public class OrmaAdapter<Model> {
         };
     }
 
+    /**
+     * Returns a model from the page cache, loading the page that contains {@code position} on a cache miss.
+     * The next page in the scroll direction is loaded in background.
+     *
+     * <p>A cache miss, e.g. the first item after the data set is changed or after a jump of scroll, loads the page
+     * synchronously in the calling thread, which is usually the main thread, because this method must return a
+     * model. Use {@link OrmaPagedRecyclerViewAdapter} to never query the database in the main thread.</p>
+     */
     @NonNull
     public Model getItem(int position) throws NoValueException {
-        if (position >= getItemCount()) {
+        int count = getItemCount();
+        if (position >= count) {
             throw new NoValueException(
-                    "ouf of range: getItem(" + position + ") for the relation with " + getItemCount() + " items");
+                    "ouf of range: getItem(" + position + ") for the relation with " + count + " items");
         }
-        Model item = cache.get(position);
-        if (item == null) {
-            item = relation.get(position);
-            cache.put(position, item);
+        int page = position / PAGE_SIZE;
+        List<Model> models = pages.get(page);
+        if (models == null) {
+            int gen = generation;
+            models = loadPage(page);
+            putPage(gen, page, models);
+        }
+        prefetch(position);
+
+        int index = position % PAGE_SIZE;
+        if (index >= models.size()) {
+            // the data set has been changed since the count was loaded
+            throw new NoValueException(
+                    "ouf of range: getItem(" + position + ") for the relation with " + (page * PAGE_SIZE + models.size())
+                            + " items");
         }
-        return item;
+        return models.get(index);
+    }
+
+    @NonNull
+    List<Model> loadPage(int page) {
+        return relation.selector()
+                .limit(PAGE_SIZE)
+                .offset((long) page * PAGE_SIZE)
+                .toList();
+    }
+
+    void putPage(int gen, int page, @NonNull List<Model> models) {
+        synchronized (lock) {
+            if (gen == generation) {
+                pages.put(page, models);
+            }
+        }
+    }
+
+    void prefetch(int position) {
+        if (lastPosition != -1 && position != lastPosition) {
+            scrollDirection = position > lastPosition ? 1 : -1;
+        }
+        lastPosition = position;
+
+        int page = position / PAGE_SIZE;
+        int index = position % PAGE_SIZE;
+        if (scrollDirection > 0 && index >= PAGE_SIZE / 2) {
+            prefetchPage(page + 1);
+        } else if (scrollDirection < 0 && index < PAGE_SIZE / 2) {
+            prefetchPage(page - 1);
+        }
+    }
+
+    void prefetchPage(final int page) {
+        int count = itemCount;
+        if (page < 0 || count == -1 || page * PAGE_SIZE >= count || pages.get(page) != null) {
+            return;
+        }
+        if (!loadingPages.add(page)) {
+            return;
+        }
+        final int gen = generation;
+        DisposableSingleObserver<List<Model>> observer = new DisposableSingleObserver<List<Model>>() {
+            @Override
+            public void onSuccess(List<Model> models) {
+                queryObservableSubscription.delete(this);
+                putPage(gen, page, models);
+                loadingPages.remove(page);
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                queryObservableSubscription.delete(this);
+                loadingPages.remove(page);
+                // getItem() loads the page again if it is still needed
+                Log.w(TAG, "OrmaAdapter: failed to prefetch page " + page, e);
+            }
+        };
+        queryObservableSubscription.add(observer);
+        Single.fromCallable(new Callable<List<Model>>() {
+            @Override
+            public List<Model> call() throws Exception {
+                return loadPage(page);
+            }
+        })
+                .subscribeOn(Schedulers.io())
+                .subscribe(observer);
     }
 
     @CheckResult
@@ -0,0 +1,358 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.gfx.android.orma.widget;
+
+import com.github.gfx.android.orma.OrmaConnection;
+import com.github.gfx.android.orma.Relation;
+import com.github.gfx.android.orma.Schema;
+import com.github.gfx.android.orma.Selector;
+import com.github.gfx.android.orma.annotation.Experimental;
+import com.github.gfx.android.orma.event.DataSetDiff;
+import com.github.gfx.android.orma.rx.RxRelation;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.collection.LongSparseArray;
+import androidx.collection.LruCache;
+import androidx.recyclerview.widget.RecyclerView;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.observers.DisposableSingleObserver;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * A {@link RecyclerView.Adapter} with the Orma backend, which never queries the database in the main thread.
+ *
+ * <p>It keeps the row ids of the relation and loads models in pages of {@link #PAGE_SIZE} in background.
+ * {@link #getItem(int)} returns {@code null} until the page is loaded, so {@code onBindViewHolder()} should
+ * show a placeholder for it; the item is notified as changed when it is loaded.</p>
+ *
+ * <p>When the relation is changed, the adapter takes the row ids and reloads the cached models in background,
+ * and then dispatches {@code notifyItemRange*()} calls for the inserted, removed, moved and changed items instead of
+ * {@code notifyDataSetChanged()}.</p>
+ *
+ * @param <Model> An Orma model class
+ * @param <VH>    A concrete view holder class
+ */
+@Experimental
+public abstract class OrmaPagedRecyclerViewAdapter<Model, VH extends RecyclerView.ViewHolder>
+        extends RecyclerView.Adapter<VH> {
+
+    public static final int PAGE_SIZE = 32;
+
+    public static final int CACHE_SIZE = PAGE_SIZE * 8;
+
+    protected final Context context;
+
+    protected final RxRelation<Model, ?> relation;
+
+    protected final CompositeDisposable subscriptions = new CompositeDisposable();
+
+    final OrmaConnection conn;
+
+    final Schema<Model> schema;
+
+    final Scheduler backgroundScheduler;
+
+    final Scheduler mainThreadScheduler;
+
+    // models keyed by row ids, which is read in background to find changed models
+    final LruCache<Long, Model> cache = new LruCache<>(CACHE_SIZE);
+
+    final Set<Integer> loadingPages = new HashSet<>();
+
+    // the following fields are accessed only in the main thread
+
+    long[] rowIds = new long[0];
+
+    // incremented when the relation is changed, before the update is loaded in background, so that pages loaded
+    // before the change are never cached after the update has taken its snapshot of the cache
+    int generation = 0;
+
+    // accessed only in the background pipeline
+    DataSetDiff<Model> lastDiff;
+
+    public OrmaPagedRecyclerViewAdapter(@NonNull Context context, @NonNull RxRelation<Model, ?> relation) {
+        this(context, relation, Schedulers.io(), AndroidSchedulers.mainThread());
+    }
+
+    /**
+     * @param backgroundScheduler A scheduler to run queries and to calculate differences
+     * @param mainThreadScheduler A scheduler to update the adapter
+     */
+    public OrmaPagedRecyclerViewAdapter(@NonNull Context context, @NonNull RxRelation<Model, ?> relation,
+            @NonNull Scheduler backgroundScheduler, @NonNull Scheduler mainThreadScheduler) {
+        this.context = context;
+        this.relation = relation;
+        this.conn = relation.getConnection();
+        this.schema = relation.getSchema();
+        this.backgroundScheduler = backgroundScheduler;
+        this.mainThreadScheduler = mainThreadScheduler;
+
+        subscriptions.add(relation.<Selector<Model, ?>>createQueryObservable()
+                .startWith(relation.selector())
+                .observeOn(mainThreadScheduler)
+                .doOnNext(new Consumer<Selector<Model, ?>>() {
+                    @Override
+                    public void accept(Selector<Model, ?> selector) throws Exception {
+                        generation++;
+                    }
+                })
+                .observeOn(backgroundScheduler)
+                .map(new Function<Selector<Model, ?>, Update<Model>>() {
+                    @Override
+                    public Update<Model> apply(Selector<Model, ?> selector) throws Exception {
+                        return loadUpdate(selector);
+                    }
+                })
+                .observeOn(mainThreadScheduler)
+                .subscribe(new Consumer<Update<Model>>() {
+                    @Override
+                    public void accept(Update<Model> update) throws Exception {
+                        applyUpdate(update);
+                    }
+                }));
+    }
+
+    static class Update<Model> {
+
+        final long[] rowIds;
+
+        final DataSetDiff<Model> diff;
+
+        final LongSparseArray<Model> reloadedModels;
+
+        final long[] removedRowIds;
+
+        final int[] changedPositions;
+
+        Update(long[] rowIds, DataSetDiff<Model> diff, LongSparseArray<Model> reloadedModels, long[] removedRowIds,
+                int[] changedPositions) {
+            this.rowIds = rowIds;
+            this.diff = diff;
+            this.reloadedModels = reloadedModels;
+            this.removedRowIds = removedRowIds;
+            this.changedPositions = changedPositions;
+        }
+    }
+
+    Update<Model> loadUpdate(Selector<Model, ?> selector) {
+        long[] newRowIds = selector.pluckRowIds();
+        DataSetDiff<Model> diff = DataSetDiff.ofRowIds(newRowIds);
+        if (lastDiff != null) {
+            diff = DataSetDiff.calculate(lastDiff, diff);
+        }
+        lastDiff = diff;
+
+        // reload the cached models to find changed ones
+        Map<Long, Model> cachedModels = cache.snapshot();
+        long[] cachedRowIds = new long[cachedModels.size()];
+        int i = 0;
+        for (Long rowId : cachedModels.keySet()) {
+            cachedRowIds[i++] = rowId;
+        }
+        LongSparseArray<Model> reloadedModels = conn.findAllByRowIds(schema, cachedRowIds);
+
+        Set<Long> changedRowIds = new HashSet<>();
+        int removedCount = 0;
+        for (long rowId : cachedRowIds) {
+            Model reloaded = reloadedModels.get(rowId);
+            if (reloaded == null) {
+                removedCount++;
+            } else if (schema.contentHashCode(conn, reloaded) != schema.contentHashCode(conn, cachedModels.get(rowId))) {
+                changedRowIds.add(rowId);
+            }
+        }
+        long[] removedRowIds = new long[removedCount];
+        removedCount = 0;
+        for (long rowId : cachedRowIds) {
+            if (reloadedModels.get(rowId) == null) {
+                removedRowIds[removedCount++] = rowId;
+            }
+        }
+
+        int[] changedPositions = new int[changedRowIds.size()];
+        int changedCount = 0;
+        for (int position = 0; position < newRowIds.length && changedCount < changedPositions.length; position++) {
+            if (changedRowIds.contains(newRowIds[position])) {
+                changedPositions[changedCount++] = position;
+            }
+        }
+
+        return new Update<>(newRowIds, diff, reloadedModels, removedRowIds, changedPositions);
+    }
+
+    void applyUpdate(Update<Model> update) {
+        // pages are indexed by positions, which are changed by the update
+        loadingPages.clear();
+
+        rowIds = update.rowIds;
+        for (long rowId : update.removedRowIds) {
+            cache.remove(rowId);
+        }
+        for (int i = 0; i < update.reloadedModels.size(); i++) {
+            cache.put(update.reloadedModels.keyAt(i), update.reloadedModels.valueAt(i));
+        }
+
+        update.diff.dispatchUpdatesTo(new DataSetDiffCallback(this));
+        for (int position : update.changedPositions) {
+            notifyItemChanged(position);
+        }
+    }
+
+    @Override
+    public int getItemCount() {
+        return rowIds.length;
+    }
+
+    @NonNull
+    public Context getContext() {
+        return context;
+    }
+
+    @NonNull
+    public LayoutInflater getLayoutInflater() {
+        return LayoutInflater.from(context);
+    }
+
+    @NonNull
+    public Relation<Model, ?> getRelation() {
+        return relation.clone();
+    }
+
+    /**
+     * Returns the model at {@code position} if it is loaded. Otherwise it starts to load the page in background and
+     * returns {@code null}, and {@link RecyclerView.Adapter#notifyItemRangeChanged(int, int)} is called when
+     * the page is loaded. The next page in the direction of the position in its page is also loaded.
+     *
+     * @param position The position of the item
+     * @return The model, or {@code null} if it is not loaded yet
+     */
+    @Nullable
+    public Model getItem(int position) {
+        if (position < 0 || position >= rowIds.length) {
+            throw new IndexOutOfBoundsException("position=" + position + ", size=" + rowIds.length);
+        }
+        int page = position / PAGE_SIZE;
+        Model model = cache.get(rowIds[position]);
+        if (model == null) {
+            loadPage(page);
+        }
+        if (position % PAGE_SIZE >= PAGE_SIZE / 2) {
+            loadPage(page + 1);
+        } else {
+            loadPage(page - 1);
+        }
+        // the page may be loaded synchronously, depending on the scheduler
+        return model != null ? model : cache.get(rowIds[position]);
+    }
+
+    void loadPage(final int page) {
+        final int start = page * PAGE_SIZE;
+        if (page < 0 || start >= rowIds.length || loadingPages.contains(page)) {
+            return;
+        }
+        final int end = Math.min(rowIds.length, start + PAGE_SIZE);
+        final long[] pageRowIds = new long[end - start];
+        boolean loaded = true;
+        for (int i = 0; i < pageRowIds.length; i++) {
+            pageRowIds[i] = rowIds[start + i];
+            if (loaded && cache.get(pageRowIds[i]) == null) {
+                loaded = false;
+            }
+        }
+        if (loaded) {
+            return;
+        }
+
+        loadingPages.add(page);
+        final int gen = generation;
+        final long[] source = rowIds;
+        DisposableSingleObserver<LongSparseArray<Model>> observer = new DisposableSingleObserver<LongSparseArray<Model>>() {
+            @Override
+            public void onSuccess(LongSparseArray<Model> models) {
+                subscriptions.delete(this);
+                if (source == rowIds) {
+                    // otherwise the page has been removed from loadingPages by an update
+                    loadingPages.remove(page);
+                }
+                if (gen != generation) {
+                    // the models may be stale, so let them be loaded again when they are bound
+                    notifyItemsChanged(pageRowIds);
+                    return;
+                }
+                for (int i = 0; i < models.size(); i++) {
+                    cache.put(models.keyAt(i), models.valueAt(i));
+                }
+                if (source == rowIds) {
+                    notifyItemRangeChanged(start, end - start);
+                } else {
+                    // the models are up to date but their positions have been changed by an update
+                    notifyItemsChanged(pageRowIds);
+                }
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                subscriptions.delete(this);
+                if (source == rowIds) {
+                    loadingPages.remove(page);
+                }
+            }
+        };
+        subscriptions.add(observer);
+        Single.fromCallable(new Callable<LongSparseArray<Model>>() {
+            @Override
+            public LongSparseArray<Model> call() throws Exception {
+                return conn.findAllByRowIds(schema, pageRowIds);
+            }
+        })
+                .subscribeOn(backgroundScheduler)
+                .observeOn(mainThreadScheduler)
+                .subscribe(observer);
+    }
+
+    void notifyItemsChanged(long[] targetRowIds) {
+        Set<Long> targets = new HashSet<>(targetRowIds.length * 2);
+        for (long rowId : targetRowIds) {
+            targets.add(rowId);
+        }
+        for (int position = 0; position < rowIds.length; position++) {
+            if (targets.contains(rowIds[position])) {
+                notifyItemChanged(position);
+            }
+        }
+    }
+
+    /**
+     * Stops observing the relation and loading pages.
+     */
+    public void dispose() {
+        subscriptions.dispose();
+    }
+}
@@ -26,7 +26,10 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.Arrays;
+
 import androidx.test.ext.junit.runners.AndroidJUnit4;
+import io.reactivex.functions.Predicate;
 
 import static org.hamcrest.MatcherAssert.*;
 import static org.hamcrest.Matchers.*;
@@ -103,6 +106,45 @@ public class AggregatorTest {
         assertThat(selector().avgByDoubleValue(), is(6.5));
     }
 
+    @Test
+    public void pluckAsArray() throws Exception {
+        assertThat(selector().pluckByteValueAsIntArray(), is(new int[]{10, 3}));
+        assertThat(selector().pluckIntValueAsIntArray(), is(new int[]{10, 3}));
+        assertThat(selector().pluckLongValueAsLongArray(), is(new long[]{10L, 3L}));
+        assertThat(selector().pluckFloatValueAsDoubleArray(), is(new double[]{10.0, 3.0}));
+        assertThat(selector().pluckDoubleValueAsDoubleArray(), is(new double[]{10.0, 3.0}));
+    }
+
+    @Test
+    public void pluckAsArrayObservable() throws Exception {
+        db.insertIntoModelWithPrimitives(ModelWithPrimitives.create(
+                true,
+                (byte) 5,
+                (short) 5,
+                5,
+                5,
+                5.0f,
+                5.0
+        ));
+
+        selector().pluckAsLongArrayObservable(schema.longValue, 2)
+                .test()
+                .assertValueCount(2)
+                .assertValueAt(0, new Predicate<long[]>() {
+                    @Override
+                    public boolean test(long[] values) throws Exception {
+                        return Arrays.equals(values, new long[]{10L, 3L});
+                    }
+                })
+                .assertValueAt(1, new Predicate<long[]>() {
+                    @Override
+                    public boolean test(long[] values) throws Exception {
+                        return Arrays.equals(values, new long[]{5L});
+                    }
+                })
+                .assertComplete();
+    }
+
     @Test
     public void nulls() throws Exception {
         db.deleteFromModelWithPrimitives().execute();
@@ -25,9 +25,11 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
@@ -137,6 +139,42 @@ public class ConditionHelpersTest {
         assertThat(selector().dateValueNotIn(new Date(1), new Date(2)).count(), is(8));
     }
 
+    @Test
+    public void testLargeIn() throws Exception {
+        List<Integer> ints = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        List<Double> doubles = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            ints.add(i + 8);
+            texts.add("non-null text " + (i + 8));
+            doubles.add((double) (i + 8));
+        }
+        texts.add("\"quoted\" \\ \t");
+
+        assertThat(selector().intValueIn(ints).count(), is(2));
+        assertThat(selector().nonNullTextIn(texts).count(), is(2));
+        assertThat(selector().doubleValueIn(doubles).count(), is(2));
+        assertThat(selector().intValueNotIn(ints).count(), is(8));
+        assertThat(selector().nonNullTextNotIn(texts).count(), is(8));
+    }
+
+    @Test
+    public void testLargeInWithUpdaterAndDeleter() throws Exception {
+        List<Integer> ints = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            ints.add(i + 8);
+        }
+
+        assertThat(db.updateModelWithConditionHelpers()
+                .intValueIn(ints)
+                .longValue(100)
+                .execute(), is(2));
+        assertThat(db.deleteFromModelWithConditionHelpers()
+                .intValueIn(ints)
+                .execute(), is(2));
+        assertThat(selector().count(), is(8));
+    }
+
     @Test
     public void testLt() throws Exception {
         assertThat(selector().byteValueLt((byte) 3).count(), is(3));
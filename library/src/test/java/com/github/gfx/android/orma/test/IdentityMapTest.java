@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2015 FUJI Goro (gfx).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.gfx.android.orma.test;
+
+import com.github.gfx.android.orma.IdentityMap;
+import com.github.gfx.android.orma.ModelFactory;
+import com.github.gfx.android.orma.OrmaConnection;
+import com.github.gfx.android.orma.SingleAssociation;
+import com.github.gfx.android.orma.test.model.Author;
+import com.github.gfx.android.orma.test.model.Author_Schema;
+import com.github.gfx.android.orma.test.model.Book;
+import com.github.gfx.android.orma.test.model.Book_Schema;
+import com.github.gfx.android.orma.test.model.ModelWithDirectAssociation;
+import com.github.gfx.android.orma.test.model.ModelWithNullableDirectAssociations;
+import com.github.gfx.android.orma.test.model.ModelWithNullableDirectAssociations_Schema;
+import com.github.gfx.android.orma.test.model.OrmaDatabase;
+import com.github.gfx.android.orma.test.model.Publisher;
+import com.github.gfx.android.orma.test.toolbox.OrmaFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import androidx.annotation.NonNull;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+@RunWith(AndroidJUnit4.class)
+public class IdentityMapTest {
+
+    OrmaDatabase db;
+
+    Publisher publisher;
+
+    @Before
+    public void setUp() throws Exception {
+        db = OrmaFactory.builder().identityMap(true).build();
+
+        publisher = db.createPublisher(new ModelFactory<Publisher>() {
+            @NonNull
+            @Override
+            public Publisher call() {
+                Publisher publisher = new Publisher();
+                publisher.name = "foo bar";
+                publisher.startedYear = 2015;
+                publisher.startedMonth = 12;
+                return publisher;
+            }
+        });
+
+        for (int i = 0; i < 3; i++) {
+            Book book = new Book();
+            book.title = "book #" + i;
+            book.publisher = SingleAssociation.just(publisher.id);
+            db.insertIntoBook(book);
+        }
+    }
+
+    @Test
+    public void singleAssociation() throws Exception {
+        IdentityMap identityMap = db.getConnection().getIdentityMap();
+        assertThat(identityMap, is(notNullValue()));
+
+        List<Book> books = db.selectFromBook().toList();
+        Publisher p0 = books.get(0).publisher.get();
+        Publisher p1 = books.get(1).publisher.get();
+        Publisher p2 = books.get(2).publisher.get();
+
+        // the publisher created by createPublisher() is in the identity map
+        assertThat(p0, is(sameInstance(publisher)));
+        assertThat(p1, is(sameInstance(publisher)));
+        assertThat(p2, is(sameInstance(publisher)));
+        assertThat(identityMap.hitCount(), is(3));
+    }
+
+    @Test
+    public void directAssociation() throws Exception {
+        Author author = db.createAuthor(new ModelFactory<Author>() {
+            @NonNull
+            @Override
+            public Author call() {
+                return Author.create("A");
+            }
+        });
+        db.insertIntoModelWithDirectAssociation(ModelWithDirectAssociation.create("foo", author, publisher, "a"));
+        db.insertIntoModelWithDirectAssociation(ModelWithDirectAssociation.create("bar", author, publisher, "b"));
+
+        List<ModelWithDirectAssociation> models = db.selectFromModelWithDirectAssociation().toList();
+
+        assertThat(models.get(0).publisher.name, is("foo bar"));
+        assertThat(models.get(1).publisher, is(sameInstance(models.get(0).publisher)));
+        // Author has a TEXT primary key
+        assertThat(models.get(1).author, is(not(sameInstance(models.get(0).author))));
+    }
+
+    @Test
+    public void invalidatedByWrites() throws Exception {
+        Publisher p0 = db.selectFromBook().get(0).publisher.get();
+
+        db.updatePublisher().idEq(publisher.id).name("baz").execute();
+
+        Publisher p1 = db.selectFromBook().get(1).publisher.get();
+        assertThat(p1, is(not(sameInstance(p0))));
+        assertThat(p1.name, is("baz"));
+    }
+
+    @Test
+    public void invalidatedByWritesToAssociatedTables() throws Exception {
+        final Author author = db.createAuthor(new ModelFactory<Author>() {
+            @NonNull
+            @Override
+            public Author call() {
+                return Author.create("A");
+            }
+        });
+        ModelWithNullableDirectAssociations m0 = db.createModelWithNullableDirectAssociations(
+                new ModelFactory<ModelWithNullableDirectAssociations>() {
+                    @NonNull
+                    @Override
+                    public ModelWithNullableDirectAssociations call() {
+                        ModelWithNullableDirectAssociations model = new ModelWithNullableDirectAssociations();
+                        model.author = author;
+                        return model;
+                    }
+                });
+
+        OrmaConnection conn = db.getConnection();
+        ModelWithNullableDirectAssociations_Schema schema = ModelWithNullableDirectAssociations_Schema.INSTANCE;
+        assertThat(conn.findByRowId(schema, m0.id), is(sameInstance(m0)));
+
+        db.updateAuthor().nameEq("A").note("updated").execute();
+
+        ModelWithNullableDirectAssociations m1 = conn.findByRowId(schema, m0.id);
+        assertThat(m1, is(not(sameInstance(m0))));
+        assertThat(m1.author.note, is("updated"));
+    }
+
+    @Test
+    public void overlappingTransactions() throws Exception {
+        final IdentityMap identityMap = new IdentityMap();
+        ExecutorService otherThread = Executors.newSingleThreadExecutor();
+        try {
+            // another thread writes to Book in its transaction, which is not committed yet
+            otherThread.submit(new Runnable() {
+                @Override
+                public void run() {
+                    identityMap.invalidate(Book_Schema.INSTANCE.getTableName(), true);
+                }
+            }).get();
+
+            // this thread ends its own transaction
+            identityMap.invalidate(Author_Schema.INSTANCE.getTableName(), true);
+            identityMap.invalidatePendingTables();
+
+            Book book = db.selectFromBook().get(0);
+            identityMap.put(Book_Schema.INSTANCE, book.bookId, book, identityMap.currentVersion());
+            assertThat(identityMap.get(Book_Schema.INSTANCE, book.bookId), is(sameInstance(book)));
+
+            // the other thread ends its transaction
+            otherThread.submit(new Runnable() {
+                @Override
+                public void run() {
+                    identityMap.invalidatePendingTables();
+                }
+            }).get();
+
+            assertThat(identityMap.get(Book_Schema.INSTANCE, book.bookId), is(nullValue()));
+        } finally {
+            otherThread.shutdown();
+        }
+    }
+
+    @Test
+    public void disabledByDefault() throws Exception {
+        OrmaDatabase db = OrmaFactory.create();
+        assertThat(db.getConnection().getIdentityMap(), is(nullValue()));
+    }
+}
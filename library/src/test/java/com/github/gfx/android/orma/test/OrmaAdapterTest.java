@@ -24,12 +24,17 @@ import com.github.gfx.android.orma.test.model.OrmaDatabase;
 import com.github.gfx.android.orma.test.toolbox.OrmaFactory;
 import com.github.gfx.android.orma.widget.OrmaAdapter;
 import com.github.gfx.android.orma.widget.OrmaListAdapter;
+import com.github.gfx.android.orma.widget.OrmaPagedRecyclerViewAdapter;
 import com.github.gfx.android.orma.widget.OrmaRecyclerViewAdapter;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
 import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -40,6 +45,8 @@ import androidx.recyclerview.widget.RecyclerView;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import io.reactivex.functions.Predicate;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
 
 import static org.hamcrest.MatcherAssert.*;
 import static org.hamcrest.Matchers.*;
@@ -134,6 +141,27 @@ public class OrmaAdapterTest {
         assertThat(adapter.getItem(2).name, is("C"));
     }
 
+    @Test
+    public void testGetItemAcrossPages() throws Exception {
+        Inserter<Author> inserter = db.prepareInsertIntoAuthor();
+        for (int i = 0; i < OrmaAdapter.PAGE_SIZE * 10; i++) {
+            Author author = new Author();
+            author.name = String.format(Locale.ROOT, "X%03d", i);
+            author.note = "note";
+            inserter.execute(author);
+        }
+
+        int count = adapter.getItemCount();
+        assertThat(count, is(3 + OrmaAdapter.PAGE_SIZE * 10));
+
+        for (int i = 3; i < count; i++) {
+            assertThat(adapter.getItem(i).name, is(String.format(Locale.ROOT, "X%03d", i - 3)));
+        }
+        for (int i = count - 1; i >= 3; i--) {
+            assertThat(adapter.getItem(i).name, is(String.format(Locale.ROOT, "X%03d", i - 3)));
+        }
+    }
+
     @Test
     public void testGetItemAsObservable() throws Exception {
         assertThat(adapter.getItemAsSingle(0).blockingGet().name, is("A"));
@@ -240,4 +268,130 @@ public class OrmaAdapterTest {
         assertThat(listAdapter.getItem(0).name, is("A"));
         assertThat(listAdapter.getItem(0).note, is("foo/bar/baz"));
     }
+
+    @Test
+    public void pagedRecyclerViewAdapter() throws Exception {
+        class VH extends RecyclerView.ViewHolder {
+
+            public VH(View itemView) {
+                super(itemView);
+            }
+        }
+
+        OrmaPagedRecyclerViewAdapter<Author, VH> pagedAdapter = new OrmaPagedRecyclerViewAdapter<Author, VH>(
+                getContext(), db.relationOfAuthor().noteIsNotNull().orderByNameAsc(),
+                Schedulers.trampoline(), Schedulers.trampoline()) {
+            @Override
+            public VH onCreateViewHolder(ViewGroup parent, int viewType) {
+                return null;
+            }
+
+            @Override
+            public void onBindViewHolder(VH holder, int position) {
+
+            }
+        };
+
+        final List<String> notifications = new ArrayList<>();
+        pagedAdapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onChanged() {
+                notifications.add("changed");
+            }
+
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount) {
+                notifications.add("changed " + positionStart + " " + itemCount);
+            }
+
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+                onItemRangeChanged(positionStart, itemCount);
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                notifications.add("inserted " + positionStart + " " + itemCount);
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                notifications.add("removed " + positionStart + " " + itemCount);
+            }
+
+            @Override
+            public void onItemRangeMoved(int fromPosition, int toPosition, int itemCount) {
+                notifications.add("moved " + fromPosition + " " + toPosition);
+            }
+        });
+
+        assertThat(pagedAdapter.getItemCount(), is(3));
+        assertThat(pagedAdapter.getItem(0).name, is("A")); // loaded synchronously with the trampoline scheduler
+        assertThat(pagedAdapter.getItem(2).name, is("C"));
+        assertThat(notifications, contains("changed 0 3"));
+        notifications.clear();
+
+        Author author = new Author();
+        author.name = "B2";
+        author.note = "new";
+        db.insertIntoAuthor(author);
+        assertThat(pagedAdapter.getItemCount(), is(4));
+        assertThat(notifications, contains("inserted 2 1"));
+        notifications.clear();
+
+        db.updateAuthor().nameEq("A").note("foo/bar/baz").execute();
+        assertThat(notifications, contains("changed 0 1"));
+        assertThat(pagedAdapter.getItem(0).note, is("foo/bar/baz"));
+        notifications.clear();
+
+        db.deleteFromAuthor().nameEq("B").execute();
+        assertThat(notifications, contains("removed 1 1"));
+        assertThat(pagedAdapter.getItem(1).name, is("B2"));
+        assertThat(pagedAdapter.getItem(2).name, is("C"));
+
+        pagedAdapter.dispose();
+    }
+
+    @Test
+    public void pagedRecyclerViewAdapterDiscardsPagesLoadedBeforeChanges() throws Exception {
+        class VH extends RecyclerView.ViewHolder {
+
+            public VH(View itemView) {
+                super(itemView);
+            }
+        }
+
+        TestScheduler backgroundScheduler = new TestScheduler();
+        TestScheduler mainThreadScheduler = new TestScheduler();
+        OrmaPagedRecyclerViewAdapter<Author, VH> pagedAdapter = new OrmaPagedRecyclerViewAdapter<Author, VH>(
+                getContext(), db.relationOfAuthor().noteIsNotNull().orderByNameAsc(),
+                backgroundScheduler, mainThreadScheduler) {
+            @Override
+            public VH onCreateViewHolder(ViewGroup parent, int viewType) {
+                return null;
+            }
+
+            @Override
+            public void onBindViewHolder(VH holder, int position) {
+
+            }
+        };
+        mainThreadScheduler.triggerActions();
+        backgroundScheduler.triggerActions();
+        mainThreadScheduler.triggerActions();
+        assertThat(pagedAdapter.getItemCount(), is(3));
+
+        // a page is loaded before a change, and is delivered to the main thread after the change is diffed
+        assertThat(pagedAdapter.getItem(0), is(nullValue()));
+        backgroundScheduler.triggerActions();
+        db.updateAuthor().nameEq("A").note("foo/bar/baz").execute();
+        backgroundScheduler.triggerActions();
+        mainThreadScheduler.triggerActions();
+        backgroundScheduler.triggerActions();
+        mainThreadScheduler.triggerActions();
+
+        assertThat(pagedAdapter.getItem(0).note, is("foo/bar/baz"));
+
+        pagedAdapter.dispose();
+    }
 }
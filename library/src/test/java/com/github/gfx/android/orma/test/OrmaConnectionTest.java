@@ -17,17 +17,42 @@
 package com.github.gfx.android.orma.test;
 
 import com.github.gfx.android.orma.OrmaConnection;
+import com.github.gfx.android.orma.QueryCache;
+import com.github.gfx.android.orma.ReaderPool;
+import com.github.gfx.android.orma.StatementCache;
+import com.github.gfx.android.orma.WriteQueue;
+import com.github.gfx.android.orma.core.Database;
+import com.github.gfx.android.orma.core.DatabaseProvider;
+import com.github.gfx.android.orma.core.DefaultDatabase;
+import com.github.gfx.android.orma.test.model.Author;
 import com.github.gfx.android.orma.test.model.OrmaDatabase;
+import com.github.gfx.android.orma.test.toolbox.OrmaFactory;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteException;
 
+import androidx.annotation.NonNull;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+import static org.hamcrest.Matchers.*;
+
 @RunWith(AndroidJUnit4.class)
 public class OrmaConnectionTest {
 
@@ -50,4 +75,484 @@ public class OrmaConnectionTest {
         OrmaConnection conn = db.getConnection();
         conn.execSQL("foo bar baz");
     }
+
+    @Test
+    public void testStatementCache() {
+        OrmaDatabase db = OrmaFactory.builder().statementCacheSize(2).build();
+        StatementCache cache = db.getConnection().getStatementCache();
+
+        db.insertIntoAuthor(Author.create("foo"));
+        db.insertIntoAuthor(Author.create("bar"));
+
+        assertThat(cache.missCount(), is(1));
+        assertThat(cache.hitCount(), is(1));
+        assertThat(cache.size(), is(1));
+
+        db.deleteFromAuthor().nameEq("foo").execute();
+        db.deleteFromAuthor().nameEq("bar").execute();
+
+        assertThat(cache.missCount(), is(2));
+        assertThat(cache.hitCount(), is(2));
+        assertThat(cache.size(), is(2));
+
+        db.updateAuthor().note("baz").execute();
+
+        assertThat(cache.missCount(), is(3));
+        assertThat(cache.size(), is(2));
+
+        // ad-hoc SQL never goes into the cache
+        db.getConnection().execSQL("DELETE FROM `Author` WHERE `name` = 'foo'");
+
+        assertThat(cache.missCount(), is(3));
+        assertThat(cache.size(), is(2));
+
+        assertThat(db.selectFromAuthor().count(), is(0));
+    }
+
+    @Test
+    public void testStatementCacheDisabled() {
+        OrmaDatabase db = OrmaFactory.builder().statementCacheSize(0).build();
+        StatementCache cache = db.getConnection().getStatementCache();
+
+        db.insertIntoAuthor(Author.create("foo"));
+        db.insertIntoAuthor(Author.create("bar"));
+        db.getConnection().execSQL("UPDATE `Author` SET `note` = ?", "baz");
+
+        assertThat(cache.hitCount(), is(0));
+        assertThat(cache.size(), is(0));
+        assertThat(db.selectFromAuthor().noteEq("baz").count(), is(2));
+    }
+
+    @Test
+    public void testQueryCache() {
+        OrmaDatabase db = OrmaFactory.builder().queryCacheSize(2).build();
+        QueryCache cache = db.getConnection().getQueryCache();
+
+        db.insertIntoAuthor(Author.create("foo"));
+
+        assertThat(db.selectFromAuthor().cached().count(), is(1));
+        assertThat(db.selectFromAuthor().cached().count(), is(1));
+        assertThat(db.selectFromAuthor().cached().nameEq("foo").value().name, is("foo"));
+        assertThat(db.selectFromAuthor().cached().nameEq("foo").value().name, is("foo"));
+
+        assertThat(cache.missCount(), is(2));
+        assertThat(cache.hitCount(), is(2));
+        assertThat(cache.size(), is(2));
+
+        db.insertIntoAuthor(Author.create("bar"));
+
+        assertThat(db.selectFromAuthor().cached().count(), is(2));
+        assertThat(db.selectFromAuthor().cached().orderByNameAsc().toList(), hasSize(2));
+        assertThat(db.selectFromAuthor().cached().nameEq("bar").count(), is(1));
+
+        assertThat(cache.missCount(), is(5));
+        assertThat(cache.size(), is(2));
+
+        db.getConnection().execSQL("DELETE FROM `Author`");
+
+        assertThat(db.selectFromAuthor().cached().count(), is(0));
+    }
+
+    @Test
+    public void testQueryCacheWithTransaction() {
+        final OrmaDatabase db = OrmaFactory.builder().build();
+        QueryCache cache = db.getConnection().getQueryCache();
+
+        assertThat(db.selectFromAuthor().cached().count(), is(0));
+
+        db.transactionSync(new Runnable() {
+            @Override
+            public void run() {
+                db.insertIntoAuthor(Author.create("foo"));
+                assertThat(db.selectFromAuthor().cached().count(), is(1));
+            }
+        });
+
+        assertThat(db.selectFromAuthor().cached().count(), is(1));
+        assertThat(cache.hitCount(), is(0));
+        assertThat(cache.missCount(), is(3));
+    }
+
+    @Test
+    public void testQueryCacheWithOverlappingTransactions() throws Exception {
+        final QueryCache cache = new QueryCache(10);
+        ExecutorService otherThread = Executors.newSingleThreadExecutor();
+        try {
+            // another thread writes to "book" in its transaction, which is not committed yet
+            otherThread.submit(new Runnable() {
+                @Override
+                public void run() {
+                    cache.invalidate("book", true);
+                }
+            }).get();
+
+            // this thread ends its own transaction
+            cache.invalidate("author", true);
+            cache.invalidatePendingTables();
+
+            cache.put("SELECT * FROM book", null, new String[]{"book"}, cache.currentVersion(), "old books");
+            assertThat(cache.get("SELECT * FROM book", null), is((Object) "old books"));
+
+            // the other thread ends its transaction
+            otherThread.submit(new Runnable() {
+                @Override
+                public void run() {
+                    cache.invalidatePendingTables();
+                }
+            }).get();
+
+            assertThat(cache.get("SELECT * FROM book", null), is(nullValue()));
+        } finally {
+            otherThread.shutdown();
+        }
+    }
+
+    @Test
+    public void testQueryCacheDisabled() {
+        OrmaDatabase db = OrmaFactory.builder().queryCacheSize(0).build();
+        QueryCache cache = db.getConnection().getQueryCache();
+
+        db.insertIntoAuthor(Author.create("foo"));
+
+        assertThat(db.selectFromAuthor().cached().count(), is(1));
+        assertThat(db.selectFromAuthor().cached().count(), is(1));
+
+        assertThat(cache.hitCount(), is(0));
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    public void testReaderPool() throws Exception {
+        final OrmaDatabase db = OrmaFactory.builder().readerConnections(2).build();
+        ReaderPool pool = db.getConnection().getReaderPool();
+
+        assertThat(pool, is(notNullValue()));
+        assertThat(pool.size(), is(2));
+
+        db.insertIntoAuthor(Author.create("foo"));
+        db.insertIntoAuthor(Author.create("bar"));
+
+        assertThat(db.selectFromAuthor().count(), is(2));
+
+        final AtomicInteger found = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10; j++) {
+                        found.addAndGet(db.selectFromAuthor().toList().size());
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(found.get(), is(4 * 10 * 2));
+
+        db.transactionSync(new Runnable() {
+            @Override
+            public void run() {
+                db.insertIntoAuthor(Author.create("baz"));
+                // reads in a transaction run on the writer to see uncommitted changes
+                assertThat(db.selectFromAuthor().count(), is(3));
+            }
+        });
+
+        assertThat(db.selectFromAuthor().count(), is(3));
+        assertThat(db.selectFromAuthor().nameEq("baz").value().name, is("baz"));
+    }
+
+    @Test
+    public void testReaderPoolKeepsReaderUntilCursorIsClosed() throws Exception {
+        OrmaDatabase db = OrmaFactory.builder().readerConnections(2).build();
+        db.insertIntoAuthor(Author.create("foo"));
+        ReaderPool pool = db.getConnection().getReaderPool();
+        assertThat(pool.idleCount(), is(2));
+
+        Cursor cursor = db.getConnection().rawQuery("SELECT * FROM `Author`");
+        assertThat(pool.idleCount(), is(1));
+        assertThat(cursor.moveToFirst(), is(true));
+
+        cursor.close();
+        assertThat(pool.idleCount(), is(2));
+        cursor.close();
+        assertThat(pool.idleCount(), is(2));
+    }
+
+    @Test
+    public void testReaderPoolIsReadOnly() throws Exception {
+        OrmaDatabase db = OrmaFactory.builder().readerConnections(1).build();
+        db.insertIntoAuthor(Author.create("foo"));
+        ReaderPool pool = db.getConnection().getReaderPool();
+
+        ReaderPool.Reader reader = pool.acquire();
+        try {
+            reader.getDatabase().execSQL("DELETE FROM `Author`");
+            fail("not reached");
+        } catch (Exception e) {
+            assertThat(e, is(instanceOf(SQLiteException.class)));
+        } finally {
+            pool.release(reader);
+        }
+        assertThat(db.selectFromAuthor().count(), is(1));
+    }
+
+    @Test
+    public void testReaderPoolDisabledWithoutWAL() {
+        OrmaDatabase db = OrmaFactory.builder()
+                .writeAheadLogging(false)
+                .readerConnections(2)
+                .build();
+
+        assertThat(db.getConnection().getReaderPool(), is(nullValue()));
+    }
+
+    @Test
+    public void testReaderPoolDisabledWithoutReadOnlyProvider() {
+        final DatabaseProvider defaultProvider = new DefaultDatabase.Provider();
+        OrmaDatabase db = OrmaFactory.builder()
+                .provider(new DatabaseProvider() {
+                    @NonNull
+                    @Override
+                    public Database provideOnDiskDatabase(@NonNull Context context, @NonNull String name, int mode) {
+                        return defaultProvider.provideOnDiskDatabase(context, name, mode);
+                    }
+
+                    @NonNull
+                    @Override
+                    public Database provideOnMemoryDatabase(@NonNull Context context) {
+                        return defaultProvider.provideOnMemoryDatabase(context);
+                    }
+                })
+                .readerConnections(2)
+                .build();
+
+        assertThat(db.getConnection().getReaderPool(), is(nullValue()));
+
+        db.insertIntoAuthor(Author.create("foo"));
+        assertThat(db.selectFromAuthor().count(), is(1));
+    }
+
+    @Test
+    public void testNoLockAfterMigration() throws Exception {
+        final OrmaDatabase db = OrmaFactory.create();
+        db.migrate();
+
+        OrmaConnection conn = db.getConnection();
+        int lockCount = conn.getMigrationLockCount();
+        assertThat(lockCount, is(greaterThan(0)));
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10; j++) {
+                        db.insertIntoAuthor(Author.create("foo" + Thread.currentThread().getId() + "-" + j));
+                        db.selectFromAuthor().count();
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(db.selectFromAuthor().count(), is(4 * 10));
+        assertThat(conn.getMigrationLockCount(), is(lockCount));
+    }
+
+    @Test
+    public void testWriteQueue() throws Exception {
+        final OrmaDatabase db = OrmaFactory.builder()
+                .writeQueue(100, 1, TimeUnit.SECONDS)
+                .build();
+        final WriteQueue queue = db.getConnection().writeQueue();
+
+        final List<Future<Void>> futures = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            final int n = i;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10; j++) {
+                        final String name = "foo" + n + "-" + j;
+                        Future<Void> future = queue.submit(new Runnable() {
+                            @Override
+                            public void run() {
+                                db.insertIntoAuthor(Author.create(name));
+                            }
+                        });
+                        synchronized (futures) {
+                            futures.add(future);
+                        }
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+
+        assertThat(db.selectFromAuthor().count(), is(4 * 10));
+        assertThat(queue.getTaskCount(), is(40L));
+        assertThat(queue.getCommitCount(), is(lessThan(40L)));
+        assertThat(queue.getMaxCommitLatencyMillis(), is(greaterThanOrEqualTo(queue.getAverageCommitLatencyMillis())));
+    }
+
+    @Test
+    public void testWriteQueueWithFailingTask() throws Exception {
+        final OrmaDatabase db = OrmaFactory.builder()
+                .writeQueue(100, 100, TimeUnit.MILLISECONDS)
+                .build();
+        WriteQueue queue = db.getConnection().writeQueue();
+
+        Future<Void> foo = queue.submit(new Runnable() {
+            @Override
+            public void run() {
+                db.insertIntoAuthor(Author.create("foo"));
+            }
+        });
+        Future<Void> failure = queue.submit(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("failure");
+            }
+        });
+        db.getConnection().submitToWriteQueueAsCompletable(new Runnable() {
+            @Override
+            public void run() {
+                db.insertIntoAuthor(Author.create("bar"));
+            }
+        }).blockingAwait();
+
+        foo.get();
+        try {
+            failure.get();
+            fail("not reached");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), is(instanceOf(IllegalStateException.class)));
+        }
+
+        assertThat(db.selectFromAuthor().count(), is(2));
+        assertThat(queue.getTaskCount(), is(2L));
+
+        db.getConnection().close();
+        try {
+            queue.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+            fail("not reached");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("closed"));
+        }
+    }
+
+    @Test
+    public void testWriteQueueWithCancelledTask() throws Exception {
+        final OrmaDatabase db = OrmaFactory.builder()
+                .writeQueue(100, 1, TimeUnit.MILLISECONDS)
+                .build();
+        WriteQueue queue = db.getConnection().writeQueue();
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch resumed = new CountDownLatch(1);
+        Future<Void> foo = queue.submit(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    resumed.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                db.insertIntoAuthor(Author.create("foo"));
+            }
+        });
+        started.await();
+
+        Future<Void> bar = queue.submit(new Runnable() {
+            @Override
+            public void run() {
+                db.insertIntoAuthor(Author.create("bar"));
+            }
+        });
+
+        assertThat(foo.cancel(false), is(false));
+        assertThat(bar.cancel(false), is(true));
+        resumed.countDown();
+
+        foo.get(10, TimeUnit.SECONDS);
+        assertThat(bar.isCancelled(), is(true));
+
+        queue.close(); // waits for the writer
+        assertThat(db.selectFromAuthor().nameEq("foo").count(), is(1));
+        assertThat(db.selectFromAuthor().nameEq("bar").count(), is(0));
+        assertThat(queue.getTaskCount(), is(1L));
+    }
+
+    @Test
+    public void testWriteQueueWithNestedTask() throws Exception {
+        final OrmaDatabase db = OrmaFactory.builder()
+                .writeQueue(100, 100, TimeUnit.MILLISECONDS)
+                .build();
+        final WriteQueue queue = db.getConnection().writeQueue();
+
+        Future<Void> foo = queue.submit(new Runnable() {
+            @Override
+            public void run() {
+                db.insertIntoAuthor(Author.create("foo"));
+                try {
+                    // must not wait for the writer itself
+                    queue.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            db.insertIntoAuthor(Author.create("bar"));
+                        }
+                    }).get();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+
+        foo.get(10, TimeUnit.SECONDS);
+        assertThat(db.selectFromAuthor().count(), is(2));
+    }
+
+    @Test
+    public void testWriteQueueClosedByTask() throws Exception {
+        final OrmaDatabase db = OrmaFactory.builder()
+                .writeQueue(100, 100, TimeUnit.MILLISECONDS)
+                .build();
+        final WriteQueue queue = db.getConnection().writeQueue();
+
+        Future<Void> foo = queue.submit(new Runnable() {
+            @Override
+            public void run() {
+                db.insertIntoAuthor(Author.create("foo"));
+                queue.close(); // must not wait for the writer itself
+            }
+        });
+
+        foo.get(10, TimeUnit.SECONDS);
+        assertThat(db.selectFromAuthor().count(), is(1));
+    }
 }
@@ -17,9 +17,13 @@
 package com.github.gfx.android.orma.test;
 
 import com.github.gfx.android.orma.event.DataSetChangedEvent;
+import com.github.gfx.android.orma.event.DataSetDiff;
 import com.github.gfx.android.orma.test.model.Author;
 import com.github.gfx.android.orma.test.model.Author_Selector;
 import com.github.gfx.android.orma.test.model.OrmaDatabase;
+import com.github.gfx.android.orma.test.model.Publisher;
+import com.github.gfx.android.orma.test.model.PublisherSchema;
+import com.github.gfx.android.orma.test.model.PublisherSelector;
 import com.github.gfx.android.orma.test.toolbox.OrmaFactory;
 import com.github.gfx.android.orma.test.toolbox.TestUtils;
 
@@ -28,13 +32,24 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import io.reactivex.Observable;
 import io.reactivex.disposables.Disposable;
 import io.reactivex.functions.Consumer;
 import io.reactivex.functions.Function;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.schedulers.TestScheduler;
 
 import static org.hamcrest.MatcherAssert.*;
 import static org.hamcrest.Matchers.*;
@@ -181,6 +196,340 @@ public class QueryObservableTest {
         });
         assertThat(result, hasSize(1));
         assertThat(result, contains(DataSetChangedEvent.Type.TRANSACTION));
+
+        // executeAll() runs in an implicit transaction
+        result.clear();
+        db.prepareInsertIntoAuthor().executeAll(Arrays.asList(
+                Author.create("author1"),
+                Author.create("author2"),
+                Author.create("author3")));
+        assertThat(result, hasSize(1));
+        assertThat(result, contains(DataSetChangedEvent.Type.TRANSACTION));
+
+        result.clear();
+        db.prepareInsertIntoAuthor()
+                .executeAllAsObservable(Arrays.asList(
+                        Author.create("author4"),
+                        Author.create("author5")))
+                .test()
+                .assertValueCount(2);
+        assertThat(result, hasSize(1));
+        assertThat(result, contains(DataSetChangedEvent.Type.TRANSACTION));
+    }
+
+    @Test
+    public void notifiesOnlyObserversOfModifiedTable() throws Exception {
+        final List<DataSetChangedEvent.Type> result = new ArrayList<>();
+
+        db.relationOfAuthor()
+                .<Author_Selector>createEventObservable()
+                .subscribe(new Consumer<DataSetChangedEvent<Author_Selector>>() {
+                    @Override
+                    public void accept(DataSetChangedEvent<Author_Selector> event) throws Exception {
+                        result.add(event.getType());
+                    }
+                });
+
+        Publisher publisher = new Publisher();
+        publisher.name = "foo";
+        publisher.startedYear = 2015;
+        publisher.startedMonth = 12;
+        db.insertIntoPublisher(publisher);
+        assertThat(result, is(empty()));
+
+        db.insertIntoAuthor(Author.create("bar"));
+        assertThat(result, contains(DataSetChangedEvent.Type.INSERT));
+    }
+
+    @Test
+    public void transactionsInMultipleThreads() throws Exception {
+        final int nThreads = 4;
+        final int nTransactions = 25;
+        final AtomicInteger authorEvents = new AtomicInteger();
+        final AtomicInteger publisherEvents = new AtomicInteger();
+
+        db.relationOfAuthor()
+                .<Author_Selector>createEventObservable()
+                .subscribe(new Consumer<DataSetChangedEvent<Author_Selector>>() {
+                    @Override
+                    public void accept(DataSetChangedEvent<Author_Selector> event) throws Exception {
+                        assertThat(event.getType(), is(DataSetChangedEvent.Type.TRANSACTION));
+                        authorEvents.incrementAndGet();
+                    }
+                });
+        db.relationOfPublisher()
+                .<PublisherSelector>createEventObservable()
+                .subscribe(new Consumer<DataSetChangedEvent<PublisherSelector>>() {
+                    @Override
+                    public void accept(DataSetChangedEvent<PublisherSelector> event) throws Exception {
+                        publisherEvents.incrementAndGet();
+                    }
+                });
+
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < nThreads; i++) {
+            final int threadId = i;
+            futures.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < nTransactions; j++) {
+                        final String name = "author " + threadId + "-" + j;
+                        db.transactionSync(new Runnable() {
+                            @Override
+                            public void run() {
+                                db.insertIntoAuthor(Author.create(name));
+                                // a nested transaction does not fire events by itself
+                                db.transactionSync(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        db.insertIntoAuthor(Author.create(name + " (nested)"));
+                                    }
+                                });
+                            }
+                        });
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertThat(db.selectFromAuthor().count(), is(1 + nThreads * nTransactions * 2));
+        assertThat(authorEvents.get(), is(nThreads * nTransactions));
+        assertThat(publisherEvents.get(), is(0));
+    }
+
+    @Test
+    public void coalescedQueryObservable() throws Exception {
+        TestScheduler scheduler = new TestScheduler();
+        OrmaDatabase db = OrmaFactory.builder()
+                .queryObservableWindow(100, TimeUnit.MILLISECONDS)
+                .build();
+        db.getConnection().setQueryObservableScheduler(scheduler);
+
+        TestObserver<Author_Selector> observer = db.relationOfAuthor()
+                .<Author_Selector>createQueryObservable()
+                .test();
+
+        for (int i = 0; i < 10; i++) {
+            db.insertIntoAuthor(Author.create("author " + i));
+        }
+
+        // the first event is emitted at once
+        scheduler.triggerActions();
+        observer.assertValueCount(1);
+
+        // the rest of the events are coalesced into the last one at the end of the window
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        observer.assertValueCount(2);
+
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        observer.assertValueCount(2);
+
+        db.insertIntoAuthor(Author.create("foo"));
+        scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        observer.assertValueCount(3);
+    }
+
+    @Test
+    public void queryObservableWithWindow() throws Exception {
+        TestScheduler scheduler = new TestScheduler();
+
+        TestObserver<Author_Selector> observer = db.relationOfAuthor()
+                .<Author_Selector>createQueryObservable(100, TimeUnit.MILLISECONDS, scheduler)
+                .test();
+
+        db.transactionSync(new Runnable() {
+            @Override
+            public void run() {
+                db.insertIntoAuthor(Author.create("bar"));
+            }
+        });
+        db.insertIntoAuthor(Author.create("baz"));
+        db.deleteFromAuthor().nameEq("bar").execute();
+
+        scheduler.advanceTimeBy(100, TimeUnit.MILLISECONDS);
+        observer.assertValueCount(2);
+        assertThat(observer.values().get(1).count(), is(2));
+    }
+
+    @Test
+    public void rowIds() throws Exception {
+        final List<DataSetChangedEvent<PublisherSelector>> events = new ArrayList<>();
+
+        db.relationOfPublisher()
+                .<PublisherSelector>createEventObservable()
+                .subscribe(new Consumer<DataSetChangedEvent<PublisherSelector>>() {
+                    @Override
+                    public void accept(DataSetChangedEvent<PublisherSelector> event) throws Exception {
+                        events.add(event);
+                    }
+                });
+
+        final long id1 = db.insertIntoPublisher(createPublisher("foo"));
+        assertThat(events.get(0).getType(), is(DataSetChangedEvent.Type.INSERT));
+        assertThat(events.get(0).getRowIds(), is(new long[]{id1}));
+
+        // an observer can't modify the row ids other observers see
+        events.get(0).getRowIds()[0] = -1;
+        assertThat(events.get(0).getRowIds(), is(new long[]{id1}));
+
+        db.updatePublisher().idEq(id1).name("bar").execute();
+        assertThat(events.get(1).getRowIds(), is(new long[]{id1}));
+
+        // unknown rows
+        db.updatePublisher().where("name = ?", "bar").name("baz").execute();
+        assertThat(events.get(2).getRowIds(), is(nullValue()));
+
+        db.deleteFromPublisher().idEq(id1).or().where("name = ?", "baz").execute();
+        assertThat(events.get(3).getRowIds(), is(nullValue()));
+
+        final long[] ids = new long[2];
+        db.transactionSync(new Runnable() {
+            @Override
+            public void run() {
+                ids[0] = db.insertIntoPublisher(createPublisher("foo"));
+                ids[1] = db.insertIntoPublisher(createPublisher("bar"));
+                db.updatePublisher().idEq(ids[0]).name("baz").execute();
+            }
+        });
+        assertThat(events.get(4).getType(), is(DataSetChangedEvent.Type.TRANSACTION));
+        assertThat(events.get(4).getRowIds(), is(ids));
+
+        db.relationOfPublisher().idIn(ids[0], ids[1]).deleter().execute();
+        assertThat(events.get(5).getType(), is(DataSetChangedEvent.Type.DELETE));
+        assertThat(events.get(5).getRowIds(), is(ids));
+    }
+
+    @Test
+    public void diffObservable() throws Exception {
+        final List<DataSetDiff<Publisher>> diffs = new ArrayList<>();
+
+        db.relationOfPublisher()
+                .orderBy(PublisherSchema.INSTANCE.startedYear.orderInAscending())
+                .createDiffObservable(Schedulers.trampoline())
+                .subscribe(new Consumer<DataSetDiff<Publisher>>() {
+                    @Override
+                    public void accept(DataSetDiff<Publisher> diff) throws Exception {
+                        diffs.add(diff);
+                    }
+                });
+
+        assertThat(diffs, hasSize(1));
+        assertThat(diffs.get(0).isInitial(), is(true));
+        assertThat(diffs.get(0).isEmpty(), is(true));
+
+        Publisher a = createPublisher("a");
+        a.startedYear = 2000;
+        final long idA = db.insertIntoPublisher(a);
+        assertThat(describe(diffs.get(1)), contains("INSERT 0 1"));
+
+        Publisher b = createPublisher("b");
+        b.startedYear = 2001;
+        final long idB = db.insertIntoPublisher(b);
+        assertThat(describe(diffs.get(2)), contains("INSERT 1 1"));
+
+        db.updatePublisher().idEq(idA).startedYear(2002).execute();
+        assertThat(describe(diffs.get(3)), contains("MOVE 0 1", "CHANGE 1 1"));
+        assertThat(diffs.get(3).getList().get(1).name, is("a"));
+
+        db.updatePublisher().idEq(idB).name("b2").execute();
+        assertThat(describe(diffs.get(4)), contains("CHANGE 0 1"));
+
+        // no differences
+        db.updatePublisher().idEq(idB).name("b2").execute();
+        assertThat(diffs, hasSize(5));
+
+        db.deleteFromPublisher().idEq(idA).execute();
+        assertThat(describe(diffs.get(5)), contains("REMOVE 1 1"));
+    }
+
+    @Test
+    public void diffTransformsPreviousList() throws Exception {
+        Random random = new Random(42);
+
+        for (int n = 0; n < 100; n++) {
+            List<Publisher> oldList = createPublishers(random);
+            List<Publisher> newList = createPublishers(random);
+
+            DataSetDiff<Publisher> previous = DataSetDiff.initial(db.getConnection(), PublisherSchema.INSTANCE, oldList);
+            DataSetDiff<Publisher> diff = DataSetDiff.calculate(previous,
+                    DataSetDiff.initial(db.getConnection(), PublisherSchema.INSTANCE, newList));
+
+            final List<Publisher> list = new ArrayList<>(oldList);
+            final boolean[] changed = new boolean[newList.size()];
+            diff.dispatchUpdatesTo(new DataSetDiff.Callback() {
+                @Override
+                public void onInserted(int position, int count) {
+                    for (int i = 0; i < count; i++) {
+                        list.add(position + i, null);
+                    }
+                }
+
+                @Override
+                public void onRemoved(int position, int count) {
+                    list.subList(position, position + count).clear();
+                }
+
+                @Override
+                public void onMoved(int fromPosition, int toPosition) {
+                    list.add(toPosition, list.remove(fromPosition));
+                }
+
+                @Override
+                public void onChanged(int position, int count) {
+                    for (int i = 0; i < count; i++) {
+                        changed[position + i] = true;
+                    }
+                }
+            });
+
+            assertThat(list, hasSize(newList.size()));
+            for (int i = 0; i < list.size(); i++) {
+                Publisher publisher = list.get(i);
+                if (publisher == null) {
+                    continue; // inserted
+                }
+                assertThat(publisher.id, is(newList.get(i).id));
+                assertThat(changed[i], is(!publisher.name.equals(newList.get(i).name)));
+            }
+        }
+    }
+
+    static List<Publisher> createPublishers(Random random) {
+        List<Publisher> publishers = new ArrayList<>();
+        for (int id = 1; id <= 20; id++) {
+            if (random.nextInt(4) != 0) {
+                Publisher publisher = createPublisher("name " + random.nextInt(2));
+                publisher.id = id;
+                publishers.add(publisher);
+            }
+        }
+        Collections.shuffle(publishers, random);
+        return publishers;
+    }
+
+    static List<String> describe(DataSetDiff<?> diff) {
+        List<String> changes = new ArrayList<>();
+        for (DataSetDiff.Change change : diff.getChanges()) {
+            if (change.getType() == DataSetDiff.Type.MOVE) {
+                changes.add(change.getType() + " " + change.getPosition() + " " + change.getToPosition());
+            } else {
+                changes.add(change.getType() + " " + change.getPosition() + " " + change.getCount());
+            }
+        }
+        return changes;
+    }
+
+    static Publisher createPublisher(String name) {
+        Publisher publisher = new Publisher();
+        publisher.name = name;
+        publisher.startedYear = 2015;
+        publisher.startedMonth = 12;
+        return publisher;
     }
 
 }
@@ -17,11 +17,15 @@ package com.github.gfx.android.orma.test;
 
 import com.github.gfx.android.orma.Inserter;
 import com.github.gfx.android.orma.ModelFactory;
+import com.github.gfx.android.orma.ModelWithChildren;
+import com.github.gfx.android.orma.PreparedSelector;
 import com.github.gfx.android.orma.SingleAssociation;
 import com.github.gfx.android.orma.annotation.OnConflict;
 import com.github.gfx.android.orma.exception.InvalidStatementException;
 import com.github.gfx.android.orma.exception.NoValueException;
+import com.github.gfx.android.orma.function.Consumer1;
 import com.github.gfx.android.orma.function.Function1;
+import com.github.gfx.android.orma.internal.CursorIterator;
 import com.github.gfx.android.orma.test.model.Author;
 import com.github.gfx.android.orma.test.model.Author_Selector;
 import com.github.gfx.android.orma.test.model.Book;
@@ -41,6 +45,9 @@ import android.database.sqlite.SQLiteException;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import androidx.annotation.NonNull;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
@@ -149,6 +156,204 @@ public class QueryTest {
         }
     }
 
+    @Test
+    public void forEach() throws Exception {
+        final List<String> titles = new ArrayList<>();
+        db.selectFromBook().orderByTitleAsc().forEach(new Consumer<Book>() {
+            @Override
+            public void accept(Book book) {
+                titles.add(book.title);
+            }
+        });
+        assertThat(titles, contains("friday", "today"));
+    }
+
+    @Test
+    public void forEachModel() throws Exception {
+        final List<String> titles = new ArrayList<>();
+        db.selectFromBook().orderByTitleAsc().forEachModel(new Consumer1<Book>() {
+            @Override
+            public void accept(Book book) {
+                titles.add(book.title);
+            }
+        });
+        assertThat(titles, contains("friday", "today"));
+    }
+
+    @Test
+    public void cursorIterator() throws Exception {
+        CursorIterator<Book> iterator = db.selectFromBook().orderByTitleDesc().cursorIterator();
+        try {
+            assertThat(iterator.hasNext(), is(true));
+            assertThat(iterator.hasNext(), is(true));
+            assertThat(iterator.next().title, is("today"));
+            assertThat(iterator.next().title, is("friday"));
+            assertThat(iterator.hasNext(), is(false));
+        } finally {
+            iterator.close();
+        }
+
+        iterator = db.selectFromBook().cursorIterator();
+        iterator.close();
+        assertThat(iterator.hasNext(), is(false));
+    }
+
+    @Test
+    public void forEachChunk() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            Book book = new Book();
+            book.title = "name #" + i;
+            book.content = "blah blah blah #" + i;
+            book.publisher = SingleAssociation.just(publisher);
+
+            db.insertIntoBook(book);
+        }
+
+        final List<Integer> chunkSizes = new ArrayList<>();
+        db.selectFromBook().forEachChunk(3, new Consumer1<List<Book>>() {
+            @Override
+            public void accept(List<Book> books) {
+                chunkSizes.add(books.size());
+            }
+        });
+        assertThat(chunkSizes, contains(3, 3, 1));
+    }
+
+    @Test
+    public void stream() throws Exception {
+        List<String> titles = db.selectFromBook()
+                .orderByTitleDesc()
+                .stream()
+                .map(new java.util.function.Function<Book, String>() {
+                    @Override
+                    public String apply(Book book) {
+                        return book.title;
+                    }
+                })
+                .collect(Collectors.<String>toList());
+        assertThat(titles, contains("today", "friday"));
+
+        try (Stream<Book> stream = db.selectFromBook().stream()) {
+            assertThat(stream.findFirst().get().title, is("today"));
+        }
+    }
+
+    @Test
+    public void prefetch() throws Exception {
+        List<Book> books = db.selectFromBook()
+                .prefetch(db.selectFromBook().getSchema().publisher)
+                .toList();
+
+        assertThat(books, hasSize(2));
+        for (Book book : books) {
+            assertThat(book.publisher.isLoaded(), is(true));
+            assertThat(book.publisher.get().name, is("foo bar"));
+        }
+    }
+
+    @Test
+    public void prefetchAll() throws Exception {
+        final List<Publisher> publishers = new ArrayList<>();
+        db.transactionSync(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 1000; i++) {
+                    Publisher p = new Publisher();
+                    p.name = "publisher #" + i;
+                    p.startedYear = 2000;
+                    p.startedMonth = 1;
+                    p.id = db.insertIntoPublisher(p);
+                    publishers.add(p);
+
+                    Book book = new Book();
+                    book.title = "book #" + i;
+                    book.publisher = SingleAssociation.just(p.id);
+                    db.insertIntoBook(book);
+                }
+            }
+        });
+
+        List<Book> books = db.selectFromBook().orderByTitleAsc().toList();
+        List<SingleAssociation<Publisher>> associations = new ArrayList<>();
+        for (Book book : books) {
+            associations.add(book.publisher);
+        }
+        SingleAssociation.prefetchAll(associations);
+
+        assertThat(books, hasSize(1002));
+        for (SingleAssociation<Publisher> association : associations) {
+            assertThat(association.isLoaded(), is(true));
+            assertThat(association.get().id, is(association.getId()));
+        }
+    }
+
+    @Test
+    public void includeChildren() throws Exception {
+        Publisher publisher2 = new Publisher();
+        publisher2.name = "no books";
+        publisher2.startedYear = 2000;
+        publisher2.startedMonth = 1;
+        db.insertIntoPublisher(publisher2);
+
+        List<ModelWithChildren<Publisher>> publishers = db.selectFromPublisher()
+                .orderByIdAsc()
+                .includeBooks()
+                .toListWithChildren();
+
+        assertThat(publishers, hasSize(2));
+
+        assertThat(publishers.get(0).model.name, is("foo bar"));
+        List<Book> books = publishers.get(0).getChildren(db.selectFromBook().getSchema().publisher);
+        assertThat(contentsOf(books), contains("milk, banana", "apple"));
+
+        assertThat(publishers.get(1).model.name, is("no books"));
+        assertThat(publishers.get(1).getChildren(db.selectFromBook().getSchema().publisher), hasSize(0));
+    }
+
+    @Test
+    public void prepare() throws Exception {
+        PreparedSelector<Book> selector = db.selectFromBook()
+                .titleEq("")
+                .orderByTitleAsc()
+                .limit(10)
+                .prepare();
+
+        assertThat(selector.getArgumentCount(), is(1));
+
+        List<Book> books = selector.toList("today");
+        assertThat(books, hasSize(1));
+        assertThat(books.get(0).title, is("today"));
+
+        assertThat(selector.value("friday").content, is("apple"));
+        assertThat(selector.valueOrNull("tomorrow"), is(nullValue()));
+        assertThat(selector.count("today"), is(1));
+        assertThat(selector.isEmpty("tomorrow"), is(true));
+    }
+
+    @Test
+    public void prepareWithoutArguments() throws Exception {
+        PreparedSelector<Book> selector = db.selectFromBook().orderByTitleDesc().prepare();
+
+        assertThat(selector.getArgumentCount(), is(0));
+        assertThat(contentsOf(selector.toList()), contains("milk, banana", "apple"));
+        assertThat(selector.count(), is(2));
+    }
+
+    @Test
+    public void prepareWithBooleanArguments() throws Exception {
+        PreparedSelector<Book> selector = db.selectFromBook().where("inPrint = ?", true).prepare();
+
+        assertThat(selector.toList(true), hasSize(1));
+        assertThat(selector.value(true).title, is("today"));
+        assertThat(selector.value(false).title, is("friday"));
+        assertThat(selector.count(false), is(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void prepareWithWrongNumberOfArguments() throws Exception {
+        db.selectFromBook().titleEq("").prepare().toList("today", "friday");
+    }
+
     @Test
     public void value() throws Exception {
         Book book = db.selectFromBook().value();
@@ -508,6 +713,41 @@ public class QueryTest {
         }
     }
 
+    @Test
+    public void iteratorWithOrderingTerms() throws Exception {
+        for (int i = 0; i < 15; i++) {
+            Book book = new Book();
+            book.title = "name #" + (i % 4);
+            book.content = "blah blah blah #" + i;
+            book.price = i % 3;
+            book.publisher = SingleAssociation.just(publisher);
+
+            db.insertIntoBook(book);
+        }
+
+        // keyset pagination
+        assertThat(contentsOf(db.selectFromBook().orderByTitleDesc()),
+                is(contentsOf(db.selectFromBook().orderByTitleDesc().toList())));
+        assertThat(contentsOf(db.selectFromBook().orderByPriceAsc().orderByTitleDesc()),
+                is(contentsOf(db.selectFromBook().orderByPriceAsc().orderByTitleDesc().toList())));
+        assertThat(contentsOf(db.selectFromBook().orderByTitleAsc().limit(5).offset(3)),
+                is(contentsOf(db.selectFromBook().orderByTitleAsc().limit(5).offset(3).toList())));
+        assertThat(contentsOf(db.selectFromBook().where("price = 0").or().where("price = 2").titleEq("name #0")),
+                is(contentsOf(db.selectFromBook().where("price = 0").or().where("price = 2").titleEq("name #0").toList())));
+
+        // OFFSET pagination
+        assertThat(contentsOf(db.selectFromBook().orderBy("length(content) DESC, content ASC")),
+                is(contentsOf(db.selectFromBook().orderBy("length(content) DESC, content ASC").toList())));
+    }
+
+    static List<String> contentsOf(Iterable<Book> books) {
+        List<String> contents = new ArrayList<>();
+        for (Book book : books) {
+            contents.add(book.content);
+        }
+        return contents;
+    }
+
     @Test
     public void offset() throws Exception {
         try {
@@ -722,6 +962,41 @@ public class QueryTest {
         assertThat(db.selectFromBook().count(), is(7));
     }
 
+    @Test
+    public void inserterExecuteAllInBatch() throws Exception {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < 1234; i++) {
+            Book book = new Book();
+            book.title = "batch";
+            book.content = "content" + i;
+            book.publisher = SingleAssociation.just(publisher);
+            books.add(book);
+        }
+
+        Inserter<Book> inserter = db.prepareInsertIntoBook();
+        long[] rowIds = inserter.executeAll(books);
+
+        assertThat(rowIds.length, is(1234));
+        assertThat(db.selectFromBook().titleEq("batch").count(), is(1234));
+        for (int i = 0; i < rowIds.length; i++) {
+            assertThat(db.selectFromBook().bookIdEq(rowIds[i]).value().content, is("content" + i));
+        }
+    }
+
+    @Test
+    public void inserterExecuteAllWithOnConflictIgnore() throws Exception {
+        List<Author> authors = new ArrayList<>();
+        authors.add(Author.create("foo"));
+        authors.add(Author.create("bar"));
+        authors.add(Author.create("foo"));
+
+        long[] rowIds = db.prepareInsertIntoAuthor(OnConflict.IGNORE).executeAll(authors);
+
+        assertThat(rowIds.length, is(3));
+        assertThat(rowIds[2], is(-1L));
+        assertThat(db.selectFromAuthor().count(), is(2));
+    }
+
     @Test
     public void inserterExecuteModelFactory() throws Exception {
         Inserter<Book> inserter = db.prepareInsertIntoBook();
@@ -815,6 +1090,29 @@ public class QueryTest {
         assertThat(count, greaterThan(0L));
     }
 
+    @Test
+    public void rawQueryWithTypedBindArgs() throws Exception {
+        long count = db.getConnection().rawQueryForLong("select count(*) from Book where price + 0 > ?", new Object[]{150});
+        assertThat(count, is(1L));
+
+        Cursor cursor = db.getConnection().rawQuery("select title from Book where inPrint = ?", new Object[]{true});
+        try {
+            assertThat(cursor.getCount(), is(1));
+            cursor.moveToFirst();
+            assertThat(cursor.getString(0), is("today"));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Test
+    public void whereWithTypedBindArgs() throws Exception {
+        // expressions have no column affinity, so they can only be compared with numeric values
+        assertThat(db.selectFromBook().where("price + 0 > ?", 150).count(), is(1));
+        assertThat(db.selectFromBook().where("price * 1.5 = ?", 300.0).value().title, is("today"));
+        assertThat(db.selectFromBook().where("inPrint = ?", false).value().title, is("friday"));
+    }
+
     @Test
     public void execSQL() throws Exception {
         String name = "orma_test_executeSql";
@@ -19,12 +19,14 @@ package com.github.gfx.android.orma.test;
 import com.github.gfx.android.orma.BuiltInSerializers;
 import com.github.gfx.android.orma.Inserter;
 import com.github.gfx.android.orma.ModelFactory;
+import com.github.gfx.android.orma.RelationSnapshot;
 import com.github.gfx.android.orma.rx.RxRelation;
 import com.github.gfx.android.orma.test.model.ModelWithDate;
 import com.github.gfx.android.orma.test.model.ModelWithDate_Relation;
 import com.github.gfx.android.orma.test.model.ModelWithMultipleSortableColumns;
 import com.github.gfx.android.orma.test.model.ModelWithMultipleSortableColumns_Relation;
 import com.github.gfx.android.orma.test.model.OrmaDatabase;
+import com.github.gfx.android.orma.test.model.Publisher;
 import com.github.gfx.android.orma.test.toolbox.OrmaFactory;
 
 import org.junit.Before;
@@ -33,8 +35,10 @@ import org.junit.runner.RunWith;
 
 import android.content.ContentValues;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 
 import androidx.annotation.NonNull;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
@@ -174,6 +178,51 @@ public class RelationTest {
         assertThat(rel.get(0).name, is("C"));
     }
 
+    @Test
+    public void snapshot() throws Exception {
+        RelationSnapshot<ModelWithDate> snapshot = rel().orderByNameDesc().snapshot();
+        assertThat(snapshot.size(), is(3));
+        assertThat(snapshot.get(0).name, is("C"));
+        assertThat(snapshot.get(1).name, is("B"));
+        assertThat(snapshot.get(2).name, is("A"));
+        assertThat(snapshot.indexOf(find("A")), is(2));
+        assertThat(snapshot.indexOf(find("D")), is(-1));
+
+        orma.deleteFromModelWithDate().nameEq("B").execute();
+
+        assertThat(snapshot.size(), is(2));
+        assertThat(snapshot.get(1).name, is("A"));
+        assertThat(snapshot.indexOf(find("A")), is(1));
+    }
+
+    @Test
+    public void snapshotOrderedByPrimaryKey() throws Exception {
+        final int n = RelationSnapshot.BATCH_SIZE * 3 + 1;
+        final List<Publisher> publishers = new ArrayList<>();
+        orma.transactionSync(new Runnable() {
+            @Override
+            public void run() {
+                Inserter<Publisher> inserter = orma.prepareInsertIntoPublisher();
+                for (int i = 0; i < n; i++) {
+                    Publisher publisher = new Publisher();
+                    publisher.name = "publisher " + i;
+                    publisher.startedYear = 2000;
+                    publisher.startedMonth = 1;
+                    publisher.id = inserter.execute(publisher);
+                    publishers.add(publisher);
+                }
+            }
+        });
+
+        RelationSnapshot<Publisher> snapshot = orma.relationOfPublisher().orderByIdDesc().snapshot();
+        assertThat(snapshot.size(), is(n));
+        for (int i = 0; i < n; i++) {
+            Publisher publisher = publishers.get(n - 1 - i);
+            assertThat(snapshot.get(i).name, is(publisher.name));
+            assertThat(snapshot.indexOf(publisher), is(i));
+        }
+    }
+
     @Test
     public void truncateAsc() throws Exception {
         RxRelation<ModelWithDate, ?> rel = rel().orderByNameAsc();
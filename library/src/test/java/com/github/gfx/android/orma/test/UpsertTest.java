@@ -17,12 +17,14 @@
 package com.github.gfx.android.orma.test;
 
 import com.github.gfx.android.orma.annotation.OnConflict;
+import com.github.gfx.android.orma.event.DataSetChangedEvent;
 import com.github.gfx.android.orma.test.model.Author;
 import com.github.gfx.android.orma.test.model.Book;
 import com.github.gfx.android.orma.test.model.ModelWithDirectAssociation;
 import com.github.gfx.android.orma.test.model.ModelWithNullableDirectAssociations;
 import com.github.gfx.android.orma.test.model.OrmaDatabase;
 import com.github.gfx.android.orma.test.model.Publisher;
+import com.github.gfx.android.orma.test.model.PublisherSelector;
 import com.github.gfx.android.orma.test.toolbox.OrmaFactory;
 
 import org.junit.After;
@@ -30,12 +32,16 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 import androidx.test.ext.junit.runners.AndroidJUnit4;
+import io.reactivex.functions.Consumer;
 
 import static org.hamcrest.MatcherAssert.*;
 import static org.hamcrest.Matchers.*;
+import static org.junit.Assume.assumeTrue;
 
 /**
  * {@link com.github.gfx.android.orma.test.model.ModelWithDirectAssociation_Relation#upsertWithoutTransaction(ModelWithDirectAssociation)}
@@ -102,6 +108,39 @@ public class UpsertTest {
         assertThat(db.relationOfPublisher().upsert(newPublisher).startedYear, is(1999));
     }
 
+    @Test
+    public void upsertAsInsertWithGivenAutoId() throws Exception {
+        Publisher publisher = Publisher.create("foo", 2000, 12);
+        publisher.id = 42;
+        assertThat(db.relationOfPublisher().upsert(publisher).id, is(42L));
+        assertThat(db.selectFromPublisher().idEq(42L).value().name, is("foo"));
+    }
+
+    @Test
+    public void upsertFiresOneInsertEvent() throws Exception {
+        final List<DataSetChangedEvent<PublisherSelector>> events = new ArrayList<>();
+        db.relationOfPublisher()
+                .<PublisherSelector>createEventObservable()
+                .subscribe(new Consumer<DataSetChangedEvent<PublisherSelector>>() {
+                    @Override
+                    public void accept(DataSetChangedEvent<PublisherSelector> event) throws Exception {
+                        events.add(event);
+                    }
+                });
+
+        Publisher publisher = db.relationOfPublisher().upsertWithoutTransaction(Publisher.create("foo", 2000, 12));
+        assertThat(events, hasSize(1));
+        assertThat(events.get(0).getType(), is(DataSetChangedEvent.Type.INSERT));
+        assertThat(events.get(0).getRowIds(), is(new long[]{publisher.id}));
+
+        events.clear();
+        publisher.startedYear = 1999;
+        db.relationOfPublisher().upsertWithoutTransaction(publisher);
+        assertThat(events, hasSize(1));
+        assertThat(events.get(0).getType(), is(DataSetChangedEvent.Type.INSERT));
+        assertThat(events.get(0).getRowIds(), is(new long[]{publisher.id}));
+    }
+
     @Test
     public void upsertAsInsertForModelsWithSingleAssociation() throws Exception {
         Book book = Book.create("foo", Publisher.create("bar", 2017, 1));
@@ -156,6 +195,23 @@ public class UpsertTest {
         assertThat(db.relationOfModelWithNullableDirectAssociations().upsert(newModel).author, is(notNullValue()));
     }
 
+    @Test
+    public void nativeUpsertPopulatesPrimaryKey() throws Exception {
+        assumeTrue(db.getConnection().isNativeUpsertSupported());
+
+        Book book = Book.create("foo", Publisher.create("bar", 2017, 1));
+        Book newBook = db.relationOfBook().upsert(book);
+        assertThat(newBook, is(sameInstance(book)));
+        assertThat(book.bookId, is(not(0L)));
+        assertThat(book.publisher.get().id, is(not(0L)));
+
+        book.title = "baz";
+        db.relationOfBook().upsert(book);
+        assertThat(db.selectFromBook().count(), is(1));
+        assertThat(db.selectFromBook().value().title, is("baz"));
+        assertThat(db.selectFromPublisher().count(), is(1));
+    }
+
     // -------------------------
 
     @Test
@@ -97,6 +97,11 @@ public class ConditionQueryHelpers {
                     .stream()
                     .filter(ColumnDefinition::hasAggregationHelpers)
                     .forEach(column -> buildAggregationHelpers(methodSpecs, column));
+
+            schema.getColumns()
+                    .stream()
+                    .filter(column -> column.hasHelper(Column.Helpers.PLUCK))
+                    .forEach(column -> buildPluckHelpers(methodSpecs, column));
         }
 
         return methodSpecs;
@@ -516,6 +521,40 @@ public class ConditionQueryHelpers {
         }
     }
 
+    void buildPluckHelpers(List<MethodSpec> methodSpecs, ColumnDefinition column) {
+        if (column.isAssociation()) {
+            return;
+        }
+
+        TypeName serializedType = column.getSerializedType();
+        if (serializedType.isBoxedPrimitive()) {
+            serializedType = serializedType.unbox();
+        }
+
+        String suffix;
+        TypeName componentType;
+        if (serializedType.equals(TypeName.LONG)) {
+            suffix = "AsLongArray";
+            componentType = TypeName.LONG;
+        } else if (Types.looksLikeIntegerType(serializedType)) {
+            suffix = "AsIntArray";
+            componentType = TypeName.INT;
+        } else if (Types.looksLikeFloatType(serializedType)) {
+            suffix = "AsDoubleArray";
+            componentType = TypeName.DOUBLE;
+        } else {
+            return;
+        }
+
+        methodSpecs.add(MethodSpec.methodBuilder("pluck" + Strings.toUpperFirst(column.name) + suffix)
+                .addAnnotation(Annotations.nonNull())
+                .addModifiers(Modifier.PUBLIC)
+                .returns(ArrayTypeName.of(componentType))
+                .addStatement("return pluck$L(schema.$L)", suffix, column.name)
+                .build()
+        );
+    }
+
     CodeBlock buildAggregatorBody(ColumnDefinition column, String funcName, Supplier<CodeBlock> gen) {
         return CodeBlock.builder()
                 .addStatement("$T cursor = executeWithColumns(schema.$L.buildCallExpr($S))",
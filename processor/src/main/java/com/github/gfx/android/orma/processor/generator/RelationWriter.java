@@ -16,7 +16,6 @@
 package com.github.gfx.android.orma.processor.generator;
 
 import com.github.gfx.android.orma.annotation.Column;
-import com.github.gfx.android.orma.annotation.OnConflict;
 import com.github.gfx.android.orma.processor.ProcessingContext;
 import com.github.gfx.android.orma.processor.exception.ProcessingException;
 import com.github.gfx.android.orma.processor.model.AssociationDefinition;
@@ -30,11 +29,14 @@ import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.ParameterSpec;
 import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import javax.lang.model.element.Element;
 import javax.lang.model.element.Modifier;
@@ -83,6 +85,13 @@ public class RelationWriter extends BaseWriter {
 
         classBuilder.addField(FieldSpec.builder(schema.getSchemaClassName(), "schema", Modifier.FINAL).build());
 
+        if (canUpsertNatively(schema)) {
+            ColumnDefinition primaryKey = schema.getPrimaryKey().get();
+            classBuilder.addField(FieldSpec.builder(Types.String, "UPSERT_STATEMENT", Modifier.STATIC, Modifier.FINAL)
+                    .initializer("$S", context.sqlg.buildUpsertStatement(schema, primaryKey))
+                    .build());
+        }
+
         classBuilder.addMethods(buildMethodSpecs());
 
         return classBuilder.build();
@@ -169,6 +178,10 @@ public class RelationWriter extends BaseWriter {
             ).build();
         }
 
+        if (canUpsertNatively(schema)) {
+            code.add(buildNativeUpsert(modelExpr, primaryKey));
+        }
+
         // build contentValues
 
         code.addStatement("$T contentValues = new $T()", Types.ContentValues, Types.ContentValues);
@@ -178,25 +191,101 @@ public class RelationWriter extends BaseWriter {
             code.addStatement("contentValues.put($S, $L)", column.getEscapedColumnName(), expr);
         }
 
-        // only "auto = true" supports conditional UPDATE
+        // "auto = true" lets SQLite assign a new primary key unless the model has one
         if (primaryKey.autoId) {
             code.beginControlFlow("if ($L != 0)", primaryKey.buildGetColumnExpr(modelExpr));
+            code.addStatement("contentValues.put($S, $L)", primaryKey.getEscapedColumnName(),
+                    primaryKey.buildSerializedColumnExpr("conn", modelExpr));
+            code.endControlFlow();
         }
 
-        code.addStatement("int updatedRows = updater().$LEq($L).putAll(contentValues).execute()",
-                primaryKey.name, primaryKey.buildGetColumnExpr(modelExpr));
-        code.beginControlFlow("if (updatedRows != 0)");
-        code.addStatement("return selector().$LEq($L).value()",
-                primaryKey.name, primaryKey.buildGetColumnExpr(modelExpr));
-        code.endControlFlow();
+        code.addStatement("long rowId = conn.upsert(schema, contentValues)");
+        code.addStatement("return conn.findByRowId(schema, rowId)");
 
-        if (primaryKey.autoId) {
-            code.endControlFlow();
+        return code.build();
+    }
+
+    /**
+     * The native UPSERT path returns the given model as is, so the primary key must be assignable, and so must be
+     * the associated models.
+     */
+    private boolean canUpsertNatively(SchemaDefinition schema) {
+        return canUpsertNatively(schema, new HashSet<>());
+    }
+
+    private boolean canUpsertNatively(SchemaDefinition schema, Set<SchemaDefinition> visited) {
+        if (!visited.add(schema)) {
+            return false; // circular associations
+        }
+        Optional<ColumnDefinition> optionalPrimaryKey = schema.getPrimaryKey();
+        if (!optionalPrimaryKey.isPresent()) {
+            return false;
+        }
+        ColumnDefinition primaryKey = optionalPrimaryKey.get();
+        if (!primaryKey.hasHelper(Column.Helpers.CONDITION_EQ)) {
+            return false;
         }
+        if (primaryKey.autoId && !isAssignable(primaryKey)) {
+            return false;
+        }
+        for (ColumnDefinition column : schema.getColumnsWithoutAutoId()) {
+            if (column.isAssociation()) {
+                SchemaDefinition associatedSchema = context.getSchemaDef(column.getAssociation().getModelType());
+                if (associatedSchema == null || !canUpsertNatively(associatedSchema, visited)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
 
-        code.addStatement("long rowId = conn.insert(schema, contentValues, $T.NONE)", OnConflict.class);
-        code.addStatement("return conn.findByRowId(schema, rowId)");
+    private static boolean isAssignable(ColumnDefinition column) {
+        if (column.setter != null) {
+            return true;
+        }
+        Set<Modifier> modifiers = column.element.getModifiers();
+        return !modifiers.contains(Modifier.FINAL) && !modifiers.contains(Modifier.PRIVATE);
+    }
+
+    private CodeBlock buildNativeUpsert(String modelExpr, ColumnDefinition primaryKey) {
+        CodeBlock.Builder code = CodeBlock.builder();
 
+        code.beginControlFlow("if (conn.isNativeUpsertSupported())");
+
+        List<CodeBlock> args = new ArrayList<>();
+        for (ColumnDefinition column : schema.getColumns()) {
+            if (column == primaryKey) {
+                if (primaryKey.autoId) {
+                    // NULL makes SQLite assign a new row id
+                    args.add(CodeBlock.of("$L != 0 ? $L : null", primaryKey.buildGetColumnExpr(modelExpr),
+                            primaryKey.buildGetColumnExpr(modelExpr)));
+                } else {
+                    args.add(primaryKey.buildSerializedColumnExpr("conn", modelExpr));
+                }
+            } else {
+                args.add(upsertColumnAndGet(modelExpr, column));
+            }
+        }
+
+        code.add("$Lconn.upsert(schema, UPSERT_STATEMENT, new $T[]{\n",
+                primaryKey.autoId ? "long rowId = " : "", Object.class);
+        code.indent();
+        for (int i = 0; i < args.size(); i++) {
+            code.add("$L$L\n", args.get(i), i != args.size() - 1 ? "," : "");
+        }
+        code.unindent();
+        code.add("});\n");
+
+        if (primaryKey.autoId) {
+            code.beginControlFlow("if ($L == 0)", primaryKey.buildGetColumnExpr(modelExpr));
+            CodeBlock rowIdExpr = primaryKey.getUnboxType().equals(TypeName.LONG)
+                    ? CodeBlock.of("rowId")
+                    : CodeBlock.of("($T) rowId", primaryKey.getUnboxType());
+            code.addStatement("$L.$L", modelExpr, primaryKey.buildSetColumnExpr(rowIdExpr));
+            code.endControlFlow();
+        }
+        code.addStatement("return $L", modelExpr);
+        code.endControlFlow();
         return code.build();
     }
 
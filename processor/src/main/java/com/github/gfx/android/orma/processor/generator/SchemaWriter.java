@@ -583,6 +583,23 @@ public class SchemaWriter extends BaseWriter {
                         .build()
         );
 
+        methodSpecs.add(
+                MethodSpec.methodBuilder("contentHashCode")
+                        .addAnnotation(Annotations.override())
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(TypeName.INT)
+                        .addParameter(
+                                ParameterSpec.builder(Types.OrmaConnection, "conn")
+                                        .addAnnotation(Annotations.nonNull())
+                                        .build())
+                        .addParameter(
+                                ParameterSpec.builder(schema.getModelClassName(), "model")
+                                        .addAnnotation(Annotations.nonNull())
+                                        .build())
+                        .addCode(buildContentHashCode())
+                        .build()
+        );
+
         methodSpecs.add(
                 MethodSpec.methodBuilder("bindArgs")
                         .addAnnotation(Annotations.override())
@@ -601,6 +618,29 @@ public class SchemaWriter extends BaseWriter {
                                         .addAnnotation(Annotations.nonNull())
                                         .build())
                         .addParameter(boolean.class, withoutAutoId)
+                        .addStatement("bindArgs(conn, statement, model, $L, 0)", withoutAutoId)
+                        .build()
+        );
+
+        methodSpecs.add(
+                MethodSpec.methodBuilder("bindArgs")
+                        .addAnnotation(Annotations.override())
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(TypeName.VOID)
+                        .addParameter(
+                                ParameterSpec.builder(Types.OrmaConnection, "conn")
+                                        .addAnnotation(Annotations.nonNull())
+                                        .build())
+                        .addParameter(
+                                ParameterSpec.builder(Types.DatabaseStatement, "statement")
+                                        .addAnnotation(Annotations.nonNull())
+                                        .build())
+                        .addParameter(
+                                ParameterSpec.builder(schema.getModelClassName(), "model")
+                                        .addAnnotation(Annotations.nonNull())
+                                        .build())
+                        .addParameter(boolean.class, withoutAutoId)
+                        .addParameter(int.class, "offset")
                         .addCode(buildBindArgs())
                         .build()
         );
@@ -676,6 +716,24 @@ public class SchemaWriter extends BaseWriter {
         return builder.build();
     }
 
+    private CodeBlock buildContentHashCode() {
+        CodeBlock.Builder builder = CodeBlock.builder();
+
+        builder.addStatement("int h = 1");
+        for (ColumnDefinition c : schema.getColumns()) {
+            CodeBlock hashExpr = CodeBlock.of("$T.hash($L)", Types.ContentHashes,
+                    c.buildSerializedColumnExpr("conn", "model"));
+            if (c.getType().isPrimitive()) {
+                builder.addStatement("h = 31 * h + $L", hashExpr);
+            } else {
+                builder.addStatement("h = 31 * h + ($L != null ? $L : 0)", c.buildGetColumnExpr("model"), hashExpr);
+            }
+        }
+        builder.addStatement("return h");
+
+        return builder.build();
+    }
+
     private CodeBlock buildConvertToArgs() {
         CodeBlock.Builder builder = CodeBlock.builder();
 
@@ -736,7 +794,7 @@ public class SchemaWriter extends BaseWriter {
 
         List<ColumnDefinition> columns = schema.getColumns();
         for (int i = 0; i < columns.size(); i++) {
-            int n = i + 1; // bind index starts 1
+            CodeBlock n = CodeBlock.of("offset + $L", i + 1); // bind index starts 1
             ColumnDefinition c = columns.get(i);
 
             if (c.isNullableInJava()) {
@@ -814,10 +872,10 @@ public class SchemaWriter extends BaseWriter {
                 // check the primary key is null or not
                 createAssociatedModelExpr.add("cursor.isNull($L + $L) ? null : ", index, consumingItemSize);
             }
-            createAssociatedModelExpr.add("$L.newModelFromCursor(conn, cursor, $L + 1) /* consumes items: $L */",
+            createAssociatedModelExpr.add("conn.newAssociatedModelFromCursor($L, cursor, $L) /* consumes items: $L */",
                     associatedSchema.createSchemaInstanceExpr(), index, consumingItemSize);
             // Given a "Book has-a Publisher" association. The following expression should be created:
-            // book.publisher = Publisher_Schema.INSTANCE.newModelFromCursor(conn, cursor, offset)
+            // book.publisher = conn.newAssociatedModelFromCursor(Publisher_Schema.INSTANCE, cursor, offset)
             // NOTE: lhsBaseGen.apply(c) makes, e.g. "model.", ignoring the parameter "c".
             return createAssociatedModelExpr.build();
         } else if (Types.isSingleAssociation(type)) {
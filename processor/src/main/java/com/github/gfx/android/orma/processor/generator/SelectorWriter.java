@@ -17,8 +17,10 @@
 package com.github.gfx.android.orma.processor.generator;
 
 import com.github.gfx.android.orma.processor.ProcessingContext;
+import com.github.gfx.android.orma.processor.model.ColumnDefinition;
 import com.github.gfx.android.orma.processor.model.SchemaDefinition;
 import com.github.gfx.android.orma.processor.util.Annotations;
+import com.github.gfx.android.orma.processor.util.Strings;
 import com.github.gfx.android.orma.processor.util.Types;
 import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.FieldSpec;
@@ -29,6 +31,7 @@ import com.squareup.javapoet.TypeSpec;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import javax.lang.model.element.Element;
 import javax.lang.model.element.Modifier;
@@ -91,6 +94,58 @@ public class SelectorWriter extends BaseWriter {
 
         methodSpecs.addAll(queryHelpers.buildConditionHelpers(true, true));
 
+        methodSpecs.addAll(buildIncludeHelpers());
+
+        return methodSpecs;
+    }
+
+    /**
+     * Builds {@code includeXxx()} for each foreign key that refers to the schema, e.g. {@code includeBooks()} in
+     * {@code Publisher_Selector} for {@code Book#publisher}.
+     */
+    List<MethodSpec> buildIncludeHelpers() {
+        List<MethodSpec> methodSpecs = new ArrayList<>();
+
+        boolean hasIntegerPrimaryKey = schema.getPrimaryKey()
+                .map(primaryKey -> Types.looksLikeIntegerType(primaryKey.getSerializedType()))
+                .orElse(false);
+        if (!hasIntegerPrimaryKey) {
+            return methodSpecs;
+        }
+
+        for (SchemaDefinition childSchema : context.schemaMap.values()) {
+            List<ColumnDefinition> foreignKeys = childSchema.getColumns()
+                    .stream()
+                    .filter(column -> column.isAssociation() && column.getAssociatedSchema() == schema)
+                    .collect(Collectors.toList());
+
+            for (ColumnDefinition foreignKey : foreignKeys) {
+                String methodName = "include" + pluralize(childSchema.getModelClassName().simpleName());
+                if (foreignKeys.size() > 1) {
+                    methodName += "By" + Strings.toUpperFirst(foreignKey.name);
+                }
+
+                methodSpecs.add(MethodSpec.methodBuilder(methodName)
+                        .addJavadoc("Loads {@link $T} models which refer to the results by {@code $L}.\n",
+                                childSchema.getModelClassName(), foreignKey.name)
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(getTargetClassName())
+                        .addStatement("return include($L.$L)", childSchema.createSchemaInstanceExpr(), foreignKey.name)
+                        .build());
+            }
+        }
         return methodSpecs;
     }
+
+    static String pluralize(String name) {
+        if (name.endsWith("s")) {
+            return name; // may be plural already
+        } else if (name.endsWith("x") || name.endsWith("z") || name.endsWith("ch") || name.endsWith("sh")) {
+            return name + "es";
+        } else if (name.length() > 1 && name.endsWith("y") && "aeiou".indexOf(name.charAt(name.length() - 2)) == -1) {
+            return name.substring(0, name.length() - 1) + "ies";
+        } else {
+            return name + "s";
+        }
+    }
 }
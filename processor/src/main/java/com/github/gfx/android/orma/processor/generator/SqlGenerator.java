@@ -304,6 +304,36 @@ public class SqlGenerator {
         return sb.toString();
     }
 
+    /**
+     * Builds {@code INSERT INTO table (columns...) VALUES (?...) ON CONFLICT(primaryKey) DO UPDATE SET ...}
+     * which requires SQLite 3.24.0 or later.
+     */
+    @NonNull
+    public String buildUpsertStatement(SchemaDefinition schema, ColumnDefinition primaryKey) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("INSERT");
+        sb.append(buildInsertComponent(schema, false));
+        sb.append(" ON CONFLICT(");
+        appendIdentifier(sb, primaryKey.columnName);
+        sb.append(')');
+
+        boolean first = true;
+        for (ColumnDefinition c : schema.getColumns()) {
+            if (c == primaryKey) {
+                continue;
+            }
+            sb.append(first ? " DO UPDATE SET " : ",");
+            appendIdentifier(sb, c.columnName);
+            sb.append("=excluded.");
+            appendIdentifier(sb, c.columnName);
+            first = false;
+        }
+        if (first) {
+            sb.append(" DO NOTHING");
+        }
+        return sb.toString();
+    }
+
 
     public void appendIdentifier(StringBuilder sb, String identifier) {
         sb.append('`');
@@ -226,12 +226,13 @@ public class ColumnDefinition {
         if (flags == Column.Helpers.AUTO) {
             if (primaryKey) {
                 return (autoincrement || !autoId)
-                        ? Column.Helpers.CONDITIONS | Column.Helpers.ORDERS
-                        : Column.Helpers.CONDITIONS;
+                        ? Column.Helpers.CONDITIONS | Column.Helpers.ORDERS | Column.Helpers.PLUCK
+                        : Column.Helpers.CONDITIONS | Column.Helpers.PLUCK;
             } else if (indexed) {
-                return Column.Helpers.CONDITIONS | Column.Helpers.ORDERS | Column.Helpers.AGGREGATORS;
+                return Column.Helpers.CONDITIONS | Column.Helpers.ORDERS | Column.Helpers.PLUCK
+                        | Column.Helpers.AGGREGATORS;
             } else {
-                return Column.Helpers.AGGREGATORS;
+                return Column.Helpers.PLUCK | Column.Helpers.AGGREGATORS;
             }
         } else {
             return flags;
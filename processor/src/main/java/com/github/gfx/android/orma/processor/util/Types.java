@@ -150,6 +150,8 @@ public class Types {
 
     public static final ClassName Aliases = ClassName.get(ormaPackageName + ".internal", "Aliases");
 
+    public static final ClassName ContentHashes = ClassName.get(ormaPackageName + ".internal", "ContentHashes");
+
     public static final ClassName ColumnPath = ClassName.get(ormaPackageName + ".internal", "Aliases", "ColumnPath");
 
     public static final ClassName Function1 = ClassName.get(ormaPackageName + ".function", "Function1");